@@ -19,6 +19,14 @@ public class Discount {
             + " price is "
             + Discount.apply(quote.getPrice(), quote.getDiscountCode());
     }
+    // Same as applyDiscount, but keeps the result as a Quote whose price already includes the discount.
+    public static Quote discountedQuote(Quote quote) {
+        return new Quote(
+            quote.getShopName(),
+            Discount.apply(quote.getPrice(), quote.getDiscountCode()),
+            Code.NONE
+        );
+    }
     private static double apply(double price, Code code) {
         delay();
         return format(price * (100 - code.percentage) / 100);
@@ -0,0 +1,201 @@
+package org.example.java_learning;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Employees by id for concurrent payroll: Employee.raiseSalary and Manager.setBonus update plain double fields, so concurrent raises get lost and readers may see half-applied updates.
+ *  - Salaries and bonuses are stored in double arrays indexed by id (ids are given by register, from 0), not in an object per employee.
+ *  - Ids are split into stripes of STRIPE_SIZE consecutive ids, each guarded by its own StampedLock. A write locks only its stripe; a read is an optimistic read of the stripe, which takes no lock and is retried under a read lock only if a write got in the way.
+ *  - raiseAll locks all the stripes, so readers never see a bulk raise half done, then raises the stripes in parallel (a StampedLock isn't owned by a thread, so other threads can work under the locks held by the caller).
+ *  - totals is a snapshot, the sums of one instant: it reads every stripe optimistically, then validates all the stamps; a stripe written to meanwhile is read again, and the stamps validated again, without blocking writers. After a few failed attempts it read-locks all the stripes instead, which stops the writers for the time of one sum.
+ */
+public class EmployeeRegistry {
+    private static final int STRIPE_BITS = 10;
+    public static final int STRIPE_SIZE = 1 << STRIPE_BITS;
+    private static final int OPTIMISTIC_ATTEMPTS = 3;
+
+    private final String[] names;
+    private final LocalDate[] hireDays;
+    private final double[] salaries;
+    private final double[] bonuses;
+    private final StampedLock[] stripes;
+    private volatile int size;
+
+    public record Totals(int employees, double salaries, double bonuses) {
+        public double payroll() { return salaries + bonuses; }
+    }
+
+    public EmployeeRegistry(int capacity) {
+        names = new String[capacity];
+        hireDays = new LocalDate[capacity];
+        salaries = new double[capacity];
+        bonuses = new double[capacity];
+        stripes = new StampedLock[(capacity + STRIPE_SIZE - 1) >> STRIPE_BITS];
+        for (int i = 0; i < stripes.length; i++) { stripes[i] = new StampedLock(); }
+    }
+
+    // Copies the employee (and the bonus of a Manager) into the registry and returns its id.
+    public synchronized int register(Employee employee) {
+        int id = size;
+        if (id == salaries.length) { throw new IllegalStateException("Registry full: " + id + " employees"); }
+        StampedLock lock = stripes[id >> STRIPE_BITS];
+        long stamp = lock.writeLock();
+        try {
+            names[id] = employee.getName();
+            hireDays[id] = employee.getHireDay();
+            if (employee instanceof Manager manager) {
+                bonuses[id] = manager.getBonus();
+                salaries[id] = manager.getSalary() - manager.getBonus();
+            } else {
+                salaries[id] = employee.getSalary();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        size = id + 1;
+        return id;
+    }
+
+    public int size() { return size; }
+
+    public String name(int id) { return names[checkId(id)]; }
+
+    public LocalDate hireDay(int id) { return hireDays[checkId(id)]; }
+
+    // Salary plus bonus, as Manager.getSalary.
+    public double salary(int id) {
+        StampedLock lock = stripes[checkId(id) >> STRIPE_BITS];
+        long stamp = lock.tryOptimisticRead();
+        double salary = salaries[id] + bonuses[id];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                salary = salaries[id] + bonuses[id];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return salary;
+    }
+
+    public double bonus(int id) {
+        StampedLock lock = stripes[checkId(id) >> STRIPE_BITS];
+        long stamp = lock.tryOptimisticRead();
+        double bonus = bonuses[id];
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                bonus = bonuses[id];
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return bonus;
+    }
+
+    public void raiseSalary(int id, double byPercent) {
+        StampedLock lock = stripes[checkId(id) >> STRIPE_BITS];
+        long stamp = lock.writeLock();
+        try {
+            salaries[id] += salaries[id] * byPercent / 100;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void setBonus(int id, double bonus) {
+        StampedLock lock = stripes[checkId(id) >> STRIPE_BITS];
+        long stamp = lock.writeLock();
+        try {
+            bonuses[id] = bonus;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public void raiseAll(double byPercent) { raiseAll(byPercent, id -> true); }
+
+    // Raises the salary of the employees whose id is accepted by who, e.g. id -> registry.hireDay(id).isBefore(date), atomically for readers.
+    public void raiseAll(double byPercent, IntPredicate who) {
+        int count = size;
+        int stripesInUse = (count + STRIPE_SIZE - 1) >> STRIPE_BITS;
+        long[] stamps = new long[stripesInUse];
+        // Always in the same order, so two bulk raises can't deadlock; single writers hold one stripe at a time.
+        for (int stripe = 0; stripe < stripesInUse; stripe++) { stamps[stripe] = stripes[stripe].writeLock(); }
+        try {
+            IntStream.range(0, stripesInUse).parallel().forEach(stripe -> {
+                int end = Math.min(count, (stripe + 1) << STRIPE_BITS);
+                for (int id = stripe << STRIPE_BITS; id < end; id++) {
+                    if (who.test(id)) { salaries[id] += salaries[id] * byPercent / 100; }
+                }
+            });
+        } finally {
+            for (int stripe = 0; stripe < stripesInUse; stripe++) { stripes[stripe].unlockWrite(stamps[stripe]); }
+        }
+    }
+
+    public Totals totals() {
+        int count = size;
+        int stripesInUse = (count + STRIPE_SIZE - 1) >> STRIPE_BITS;
+        long[] stamps = new long[stripesInUse];
+        double[] stripeSalaries = new double[stripesInUse];
+        double[] stripeBonuses = new double[stripesInUse];
+        // Stripes to (re)read: all of them at first, then those written to since they were read.
+        boolean[] stale = new boolean[stripesInUse];
+        Arrays.fill(stale, true);
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            for (int stripe = 0; stripe < stripesInUse; stripe++) {
+                if (!stale[stripe]) { continue; }
+                stamps[stripe] = stripes[stripe].tryOptimisticRead();
+                // 0 means the stripe is write-locked right now: it stays stale, read again on the next attempt.
+                if (stamps[stripe] != 0) { sumStripe(stripe, count, stripeSalaries, stripeBonuses); }
+            }
+            // All the reads are done before this pass starts: if every stamp is still valid, no stripe changed between its read and the start of the pass, so the sums are those of that instant.
+            boolean valid = true;
+            for (int stripe = 0; stripe < stripesInUse; stripe++) {
+                stale[stripe] = stamps[stripe] == 0 || !stripes[stripe].validate(stamps[stripe]);
+                valid &= !stale[stripe];
+            }
+            if (valid) { return totals(count, stripeSalaries, stripeBonuses); }
+        }
+        // Writers kept getting in the way: all the stripes are read-locked (in the same order as raiseAll, so the two can't deadlock), which stops the writers for the time of one sum.
+        for (int stripe = 0; stripe < stripesInUse; stripe++) { stamps[stripe] = stripes[stripe].readLock(); }
+        try {
+            for (int stripe = 0; stripe < stripesInUse; stripe++) { sumStripe(stripe, count, stripeSalaries, stripeBonuses); }
+            return totals(count, stripeSalaries, stripeBonuses);
+        } finally {
+            for (int stripe = 0; stripe < stripesInUse; stripe++) { stripes[stripe].unlockRead(stamps[stripe]); }
+        }
+    }
+
+    private void sumStripe(int stripe, int count, double[] stripeSalaries, double[] stripeBonuses) {
+        double salaryTotal = 0;
+        double bonusTotal = 0;
+        int end = Math.min(count, (stripe + 1) << STRIPE_BITS);
+        for (int id = stripe << STRIPE_BITS; id < end; id++) {
+            salaryTotal += salaries[id];
+            bonusTotal += bonuses[id];
+        }
+        stripeSalaries[stripe] = salaryTotal;
+        stripeBonuses[stripe] = bonusTotal;
+    }
+
+    private static Totals totals(int count, double[] stripeSalaries, double[] stripeBonuses) {
+        double salaryTotal = 0;
+        double bonusTotal = 0;
+        for (int stripe = 0; stripe < stripeSalaries.length; stripe++) {
+            salaryTotal += stripeSalaries[stripe];
+            bonusTotal += stripeBonuses[stripe];
+        }
+        return new Totals(count, salaryTotal, bonusTotal);
+    }
+
+    private int checkId(int id) {
+        if (id < 0 || id >= size) { throw new IndexOutOfBoundsException("No employee with id " + id); }
+        return id;
+    }
+}
@@ -0,0 +1,189 @@
+package org.example.java_learning;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fruit as columns (structure of arrays): fruit i is weights[i], colors[i] and kinds[i], where a List<Apple> holds a reference per fruit to an object with a header and its fields, somewhere in the heap.
+ *  - A column is read sequentially, with no pointer to follow, so sorting or scanning by weight touches 4 bytes per fruit instead of a cache line.
+ *  - Sorting takes primitive keys (IntKey: WEIGHT, COLOR, KIND or any int computed from the columns) and no Comparator: comparing(Apple::getWeight) boxes both weights on each comparison until escape analysis removes the boxes, and follows two references.
+ *  - sortedIndex returns a permutation, the positions in sorted order, leaving the store as it is; sort reorders the columns with it. Both are stable, so sorting by several keys is sorting by each, the last one first.
+ *  - The keys are extracted once into an int[], then sorted with the permutation by an LSD radix sort, 8 bits per pass, passes on digits all keys share being skipped (weights under 65536 g need 2 passes out of 4). From PARALLEL_THRESHOLD fruit, with more than one thread in the common ForkJoinPool, key and position are packed in longs sorted by Arrays.parallelSort (dual-pivot quicksort and parallel merges), the position breaking ties to keep it stable.
+ * fruit(i) creates the Fruit, Apple or Orange of position i on demand. A FruitStore isn't thread-safe.
+ */
+public final class FruitStore {
+
+    // Fruit from which sorting goes parallel.
+    static final int PARALLEL_THRESHOLD = 1 << 22;
+
+    public enum Kind { FRUIT, APPLE, ORANGE }
+
+    private static final Color[] COLORS = Color.values();
+    private static final Kind[] KINDS = Kind.values();
+
+    // An int key of the fruit at a position, as Comparator.comparingInt but for columns.
+    @FunctionalInterface
+    public interface IntKey {
+        int keyOf(FruitStore store, int i);
+
+        IntKey WEIGHT = (store, i) -> store.weights[i];
+        IntKey COLOR = (store, i) -> store.colors[i];
+        IntKey KIND = (store, i) -> store.kinds[i];
+
+        // ~key reverses the order of ints without overflowing, unlike -key.
+        default IntKey reversed() { return (store, i) -> ~keyOf(store, i); }
+    }
+
+    private int[] weights;
+    private byte[] colors;
+    private byte[] kinds;
+    private int size;
+
+    public FruitStore() { this(16); }
+
+    public FruitStore(int capacity) {
+        weights = new int[capacity];
+        colors = new byte[capacity];
+        kinds = new byte[capacity];
+    }
+
+    public int size() { return size; }
+
+    public FruitStore add(Kind kind, int weight, Color color) {
+        if (size == weights.length) {
+            int capacity = Math.max(16, size + (size >> 1));
+            weights = Arrays.copyOf(weights, capacity);
+            colors = Arrays.copyOf(colors, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+        }
+        weights[size] = weight;
+        colors[size] = (byte) color.ordinal();
+        kinds[size] = (byte) kind.ordinal();
+        size++;
+        return this;
+    }
+
+    public FruitStore add(Fruit fruit) {
+        Kind kind = fruit instanceof Apple ? Kind.APPLE : fruit instanceof Orange ? Kind.ORANGE : Kind.FRUIT;
+        return add(kind, fruit.getWeight(), fruit.getColor());
+    }
+
+    public int weight(int i) { return weights[check(i)]; }
+
+    public Color color(int i) { return COLORS[colors[check(i)]]; }
+
+    public Kind kind(int i) { return KINDS[kinds[check(i)]]; }
+
+    public Fruit fruit(int i) {
+        return switch (kind(i)) {
+            case APPLE -> new Apple(weights[i], COLORS[colors[i]]);
+            case ORANGE -> new Orange(weights[i], COLORS[colors[i]]);
+            case FRUIT -> new Fruit(weights[i], COLORS[colors[i]]);
+        };
+    }
+
+    private int check(int i) {
+        if (i < 0 || i >= size) { throw new IndexOutOfBoundsException("Index " + i + " out of bounds for length " + size); }
+        return i;
+    }
+
+    // The positions of the fruit sorted by keys[0], then keys[1] for equal keys[0], and so on; equal fruit keep their order.
+    public int[] sortedIndex(IntKey... keys) {
+        int[] permutation = new int[size];
+        for (int i = 0; i < size; i++) { permutation[i] = i; }
+        int[] column = new int[size];
+        for (int k = keys.length - 1; k >= 0; k--) {
+            // The keys in the current order of the permutation.
+            for (int i = 0; i < size; i++) { column[i] = keys[k].keyOf(this, permutation[i]); }
+            permutation = sort(column, permutation);
+        }
+        return permutation;
+    }
+
+    // Reorders the fruit by keys, as sortedIndex.
+    public void sort(IntKey... keys) {
+        int[] permutation = sortedIndex(keys);
+        int[] sortedWeights = new int[weights.length];
+        byte[] sortedColors = new byte[colors.length];
+        byte[] sortedKinds = new byte[kinds.length];
+        for (int i = 0; i < size; i++) {
+            int from = permutation[i];
+            sortedWeights[i] = weights[from];
+            sortedColors[i] = colors[from];
+            sortedKinds[i] = kinds[from];
+        }
+        weights = sortedWeights;
+        colors = sortedColors;
+        kinds = sortedKinds;
+    }
+
+    // The permutation reordered stably by keys, keys[i] being the key of permutation[i]; keys may be reused.
+    static int[] sort(int[] keys, int[] permutation) {
+        int n = keys.length;
+        if (n >= PARALLEL_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) { packed[i] = (long) keys[i] << 32 | i; }
+            Arrays.parallelSort(packed);
+            int[] sorted = new int[n];
+            for (int i = 0; i < n; i++) { sorted[i] = permutation[(int) packed[i]]; }
+            return sorted;
+        }
+        return radixSort(keys, permutation);
+    }
+
+    private static int[] radixSort(int[] keys, int[] permutation) {
+        int n = keys.length;
+        // The histograms of the four bytes of the keys, sign bit flipped so that negative keys come first.
+        int[][] counts = new int[4][257];
+        for (int i = 0; i < n; i++) {
+            int key = keys[i] ^ Integer.MIN_VALUE;
+            counts[0][(key & 0xFF) + 1]++;
+            counts[1][(key >>> 8 & 0xFF) + 1]++;
+            counts[2][(key >>> 16 & 0xFF) + 1]++;
+            counts[3][(key >>> 24) + 1]++;
+        }
+        int[] otherKeys = null;
+        int[] otherPermutation = null;
+        for (int pass = 0; pass < 4; pass++) {
+            int[] offsets = counts[pass];
+            int shift = pass * 8;
+            if (skip(offsets, n)) { continue; }
+            if (otherKeys == null) {
+                otherKeys = new int[n];
+                otherPermutation = new int[n];
+            }
+            for (int d = 1; d <= 256; d++) { offsets[d] += offsets[d - 1]; }
+            for (int i = 0; i < n; i++) {
+                int digit = (keys[i] ^ Integer.MIN_VALUE) >>> shift & 0xFF;
+                int to = offsets[digit]++;
+                otherKeys[to] = keys[i];
+                otherPermutation[to] = permutation[i];
+            }
+            int[] swapKeys = keys;
+            keys = otherKeys;
+            otherKeys = swapKeys;
+            int[] swapPermutation = permutation;
+            permutation = otherPermutation;
+            otherPermutation = swapPermutation;
+        }
+        return permutation;
+    }
+
+    // Whether all keys have the same digit in this pass, which then leaves them in place.
+    private static boolean skip(int[] counts, int n) {
+        for (int d = 1; d <= 256; d++) {
+            if (counts[d] != 0) { return counts[d] == n; }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) { sb.append(", "); }
+            sb.append(fruit(i));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,117 @@
+package org.example.java_learning;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+/**
+ * Simulated latency of remote calls (shops, discount and exchange services).
+ * A Distribution decides how long a call takes, pause() waits for that long without spinning: Thread.sleep parks a platform thread and unmounts a virtual one, so its carrier is free to run other virtual threads meanwhile.
+ * Every thread draws from its own ThreadLocalRandom, so concurrent callers never contend on a shared Random.
+ */
+public class Latency {
+    private static volatile Distribution defaultDistribution = fixed(Duration.ofSeconds(1));
+
+    // A source of simulated call durations in nanoseconds.
+    @FunctionalInterface
+    public interface Distribution {
+        long nextNanos(RandomGenerator random);
+    }
+
+    public record Fixed(long nanos) implements Distribution {
+        public Fixed {
+            if (nanos < 0) { throw new IllegalArgumentException("nanos < 0: " + nanos); }
+        }
+        @Override
+        public long nextNanos(RandomGenerator random) { return nanos; }
+    }
+
+    // Uniform in [minNanos, maxNanos).
+    public record Uniform(long minNanos, long maxNanos) implements Distribution {
+        public Uniform {
+            if (minNanos < 0 || maxNanos <= minNanos) {
+                throw new IllegalArgumentException("Invalid range [" + minNanos + ", " + maxNanos + ")");
+            }
+        }
+        @Override
+        public long nextNanos(RandomGenerator random) { return random.nextLong(minNanos, maxNanos); }
+    }
+
+    // Log-normal around the median: most calls are close to it, but there is a long tail of slow ones, as in real networks.
+    public record LogNormal(long medianNanos, double sigma) implements Distribution {
+        public LogNormal {
+            if (medianNanos <= 0 || sigma < 0) {
+                throw new IllegalArgumentException("Invalid median " + medianNanos + " or sigma " + sigma);
+            }
+        }
+        @Override
+        public long nextNanos(RandomGenerator random) {
+            return (long) (medianNanos * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    // Replays recorded durations in order, wrapping around at the end of the trace. The cursor is shared by all threads.
+    public record Trace(long[] nanos, AtomicLong cursor) implements Distribution {
+        public Trace {
+            if (nanos.length == 0) { throw new IllegalArgumentException("Empty trace"); }
+        }
+        @Override
+        public long nextNanos(RandomGenerator random) {
+            return nanos[(int) Math.floorMod(cursor.getAndIncrement(), (long) nanos.length)];
+        }
+    }
+
+    public static Distribution fixed(Duration duration) { return new Fixed(duration.toNanos()); }
+
+    public static Distribution uniform(Duration min, Duration max) { return new Uniform(min.toNanos(), max.toNanos()); }
+
+    public static Distribution logNormal(Duration median, double sigma) { return new LogNormal(median.toNanos(), sigma); }
+
+    public static Distribution replay(Duration... durations) {
+        long[] nanos = new long[durations.length];
+        for (int i = 0; i < durations.length; i++) { nanos[i] = durations[i].toNanos(); }
+        return new Trace(nanos, new AtomicLong());
+    }
+
+    // A trace file contains one duration in milliseconds per line (fractions allowed), blank lines and lines starting with # are skipped.
+    public static Distribution replay(Path trace) {
+        try (var lines = Files.lines(trace)) {
+            long[] nanos = lines
+                .map(String::strip)
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .mapToLong(line -> (long) (Double.parseDouble(line) * TimeUnit.MILLISECONDS.toNanos(1)))
+                .toArray();
+            return new Trace(nanos, new AtomicLong());
+        } catch (IOException e) { throw new UncheckedIOException(e); }
+    }
+
+    public static Distribution getDefault() { return defaultDistribution; }
+
+    // Changes the latency of every call site that doesn't specify its own distribution (Util.delay(), Discount, ExchangeService).
+    public static void setDefault(Distribution distribution) { defaultDistribution = distribution; }
+
+    public static long pause() { return pause(defaultDistribution); }
+
+    // Returns the simulated duration in nanoseconds.
+    public static long pause(Distribution distribution) {
+        long nanos = distribution.nextNanos(ThreadLocalRandom.current());
+        pauseNanos(nanos);
+        return nanos;
+    }
+
+    public static void pauseNanos(long nanos) {
+        if (nanos <= 0) { return; }
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.java_learning;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Lock-free histogram of latencies in nanoseconds with log-linear buckets: every power of two is split into 16 buckets, so a percentile is reported with at most ~6% relative error whatever the magnitude, using a fixed array of counters.
+ * Recording is a single atomic increment, so many threads can record concurrently while others read percentiles.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(indexOf(value));
+        max.accumulate(value);
+    }
+
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) { total += counts.get(i); }
+        return total;
+    }
+
+    public long max() { return max.get(); }
+
+    // The smallest recorded latency such that the given fraction (0.0-1.0) of recordings aren't slower, 0 if nothing was recorded.
+    public long percentile(double fraction) {
+        if (fraction < 0 || fraction > 1) { throw new IllegalArgumentException("fraction: " + fraction); }
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) { return 0; }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) { return Math.min(highestValueIn(i), max()); }
+        }
+        return max();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) { counts.set(i, 0); }
+        max.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+            count(), percentile(0.5) / 1e6, percentile(0.9) / 1e6, percentile(0.99) / 1e6, max() / 1e6);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) { return (int) value; }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) { return index; }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
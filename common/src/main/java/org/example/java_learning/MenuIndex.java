@@ -0,0 +1,315 @@
+package org.example.java_learning;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * Dishes indexed for the queries of StreamsIntro and StreamMethods, which filter menu dish by dish with lambdas calling isVegetarian, getType or getCaloricLevel (itself comparing the calories again each time).
+ *  - Indexes: a bitmap (a long[], bit i for dish i) per Dish.Type, per CaloricLevel and for vegetarian dishes, all computed once; the calories by position; the positions sorted by calories, with the calories in that order.
+ *  - A Query is a conjunction: vegetarian or not, some types, some caloric levels, a calories range. Its bitmaps are ANDed word by word (the types or levels of a condition ORed first), the calories range adding a word of bits computed from the calories column, or the positions of a narrow range taken from the sorted column.
+ *  - count() does this without storing anything, adding the Long.bitCount of each word; dishes() keeps the words and reads them as a List; topByCalories(k) and bottomByCalories(k) walk the sorted calories column from one end and keep the first k dishes in the result.
+ *  - From PARALLEL_WORDS words (about 10^6 dishes), the words are split in chunks processed in parallel on the common ForkJoinPool.
+ * The index is immutable and can be queried by several threads; a Query is built and run by one.
+ */
+public final class MenuIndex {
+
+    // Words of 64 dishes per parallel chunk, and the number of words from which counting and filtering go parallel.
+    static final int CHUNK_WORDS = 1 << 12;
+    static final int PARALLEL_WORDS = 1 << 14;
+
+    private static final Dish.Type[] TYPES = Dish.Type.values();
+    private static final CaloricLevel[] LEVELS = CaloricLevel.values();
+
+    private final Dish[] dishes;
+    private final int words;
+    private final long[][] typeBits;
+    private final long[][] levelBits;
+    private final long[] vegetarianBits;
+    private final long[] allBits;
+    private final int[] calories;
+    // Positions sorted by calories, and their calories.
+    private final int[] byCalories;
+    private final int[] sortedCalories;
+
+    public MenuIndex(List<Dish> menu) {
+        int n = menu.size();
+        dishes = menu.toArray(new Dish[0]);
+        words = (n + 63) >>> 6;
+        typeBits = new long[TYPES.length][words];
+        levelBits = new long[LEVELS.length][words];
+        vegetarianBits = new long[words];
+        allBits = new long[words];
+        calories = new int[n];
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            Dish dish = dishes[i];
+            long bit = 1L << i;
+            typeBits[dish.getType().ordinal()][i >>> 6] |= bit;
+            levelBits[dish.getCaloricLevel().ordinal()][i >>> 6] |= bit;
+            if (dish.isVegetarian()) { vegetarianBits[i >>> 6] |= bit; }
+            allBits[i >>> 6] |= bit;
+            calories[i] = dish.getCalories();
+            keys[i] = (long) calories[i] << 32 | i;
+        }
+        Arrays.parallelSort(keys);
+        byCalories = new int[n];
+        sortedCalories = new int[n];
+        for (int i = 0; i < n; i++) {
+            byCalories[i] = (int) keys[i];
+            sortedCalories[i] = (int) (keys[i] >> 32);
+        }
+    }
+
+    public int size() { return dishes.length; }
+
+    public Query query() { return new Query(); }
+
+    /**
+     * The dishes matching all the conditions given, all dishes if none.
+     */
+    public final class Query {
+        private final List<long[]> bitmaps = new ArrayList<>();
+        private int minCalories = Integer.MIN_VALUE;
+        private int maxCalories = Integer.MAX_VALUE;
+
+        private Query() {}
+
+        public Query vegetarian(boolean vegetarian) {
+            if (vegetarian) {
+                bitmaps.add(vegetarianBits);
+            } else {
+                long[] bits = new long[words];
+                for (int w = 0; w < words; w++) { bits[w] = allBits[w] & ~vegetarianBits[w]; }
+                bitmaps.add(bits);
+            }
+            return this;
+        }
+
+        public Query type(Dish.Type... types) {
+            long[][] selected = new long[types.length][];
+            for (int i = 0; i < types.length; i++) { selected[i] = typeBits[types[i].ordinal()]; }
+            bitmaps.add(union(selected));
+            return this;
+        }
+
+        public Query caloricLevel(CaloricLevel... levels) {
+            long[][] selected = new long[levels.length][];
+            for (int i = 0; i < levels.length; i++) { selected[i] = levelBits[levels[i].ordinal()]; }
+            bitmaps.add(union(selected));
+            return this;
+        }
+
+        // Both bounds included; several ranges intersect.
+        public Query caloriesBetween(int min, int max) {
+            minCalories = Math.max(minCalories, min);
+            maxCalories = Math.min(maxCalories, max);
+            return this;
+        }
+
+        public Query caloriesBelow(int max) { return max == Integer.MIN_VALUE ? caloriesBetween(0, -1) : caloriesBetween(Integer.MIN_VALUE, max - 1); }
+
+        public Query caloriesAbove(int min) { return min == Integer.MAX_VALUE ? caloriesBetween(0, -1) : caloriesBetween(min + 1, Integer.MAX_VALUE); }
+
+        public int count() {
+            if (isEmptyRange()) { return 0; }
+            long[][] maps = plan();
+            boolean wide = isWideRange();
+            if (words < PARALLEL_WORDS) { return count(maps, wide, 0, words); }
+            return IntStream.range(0, chunks()).parallel().map(c -> count(maps, wide, c * CHUNK_WORDS, Math.min(words, (c + 1) * CHUNK_WORDS))).sum();
+        }
+
+        // The matching dishes in menu order, a view over a bitmap.
+        public List<Dish> dishes() { return new Dishes(dishes, bits()); }
+
+        // The k matching dishes with the most calories, from the most caloric.
+        public List<Dish> topByCalories(int k) { return byCalories(k, true); }
+
+        // The k matching dishes with the fewest calories, from the least caloric.
+        public List<Dish> bottomByCalories(int k) { return byCalories(k, false); }
+
+        private List<Dish> byCalories(int k, boolean top) {
+            long[] bits = bits();
+            List<Dish> result = new ArrayList<>(Math.min(k, 1024));
+            int n = byCalories.length;
+            for (int j = 0; j < n && result.size() < k; j++) {
+                int i = byCalories[top ? n - 1 - j : j];
+                if ((bits[i >>> 6] & 1L << i) != 0) { result.add(dishes[i]); }
+            }
+            return result;
+        }
+
+        private long[] bits() {
+            long[] bits = new long[words];
+            if (isEmptyRange()) { return bits; }
+            long[][] maps = plan();
+            boolean wide = isWideRange();
+            if (words < PARALLEL_WORDS) {
+                fill(maps, wide, bits, 0, words);
+            } else {
+                IntStream.range(0, chunks()).parallel().forEach(c -> fill(maps, wide, bits, c * CHUNK_WORDS, Math.min(words, (c + 1) * CHUNK_WORDS)));
+            }
+            return bits;
+        }
+
+        // The bitmaps to AND: those of the conditions and the calories range when narrow (a wide one is checked word by word), allBits if that leaves none.
+        private long[][] plan() {
+            List<long[]> maps = new ArrayList<>(bitmaps);
+            if (hasCaloriesRange() && !isWideRange()) { maps.add(narrowRange()); }
+            if (maps.isEmpty()) { maps.add(allBits); }
+            return maps.toArray(new long[0][]);
+        }
+
+        private boolean hasCaloriesRange() { return minCalories != Integer.MIN_VALUE || maxCalories != Integer.MAX_VALUE; }
+
+        // min > max: no dish can match, and rangeWord, which relies on max - min not being negative, would match them all.
+        private boolean isEmptyRange() { return minCalories > maxCalories; }
+
+        // Not with no dish in the range, which dishes.length / 16 would allow below 16 dishes.
+        private boolean isWideRange() { return hasCaloriesRange() && rangeSize() > 0 && rangeSize() >= dishes.length / 16; }
+
+        private int rangeSize() { return Math.max(0, upperBound(maxCalories) - lowerBound(minCalories)); }
+
+        private long[] narrowRange() {
+            long[] bits = new long[words];
+            for (int j = lowerBound(minCalories), end = upperBound(maxCalories); j < end; j++) { bits[byCalories[j] >>> 6] |= 1L << byCalories[j]; }
+            return bits;
+        }
+
+        // wide: whether the calories range is checked word by word.
+        private int count(long[][] maps, boolean wide, int from, int to) {
+            int count = 0;
+            for (int w = from; w < to; w++) {
+                long word = and(maps, w);
+                if (wide && word != 0) { word &= rangeWord(w); }
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        private void fill(long[][] maps, boolean wide, long[] bits, int from, int to) {
+            for (int w = from; w < to; w++) {
+                long word = and(maps, w);
+                if (wide && word != 0) { word &= rangeWord(w); }
+                bits[w] = word;
+            }
+        }
+
+        // The bits of the dishes of word w within the calories range, from the calories column. Arithmetic only: c is in [min, max] when c - min, as an unsigned int, isn't above max - min, i.e. when their difference as longs isn't negative. A ternary or an if here may be compiled to a branch, mispredicted for any range but the narrowest.
+        private long rangeWord(int w) {
+            int base = w << 6;
+            int end = Math.min(64, calories.length - base);
+            int min = minCalories;
+            long span = (maxCalories - min) & 0xFFFFFFFFL;
+            long word = 0;
+            for (int b = 0; b < end; b++) {
+                long outside = (span - ((calories[base + b] - min) & 0xFFFFFFFFL)) >>> 63;
+                word |= (outside ^ 1) << b;
+            }
+            return word;
+        }
+
+        private int chunks() { return (words + CHUNK_WORDS - 1) / CHUNK_WORDS; }
+    }
+
+    private static long and(long[][] maps, int w) {
+        long word = maps[0][w];
+        for (int m = 1; m < maps.length && word != 0; m++) { word &= maps[m][w]; }
+        return word;
+    }
+
+    private long[] union(long[][] selected) {
+        if (selected.length == 1) { return selected[0]; }
+        long[] bits = new long[words];
+        for (long[] map : selected) {
+            for (int w = 0; w < words; w++) { bits[w] |= map[w]; }
+        }
+        return bits;
+    }
+
+    // The first position in sortedCalories of calories >= min, and of calories > max.
+    private int lowerBound(int min) {
+        int low = 0;
+        int high = sortedCalories.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedCalories[middle] < min) { low = middle + 1; } else { high = middle; }
+        }
+        return low;
+    }
+
+    private int upperBound(int max) {
+        int low = 0;
+        int high = sortedCalories.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedCalories[middle] <= max) { low = middle + 1; } else { high = middle; }
+        }
+        return low;
+    }
+
+    // An unmodifiable List of the dishes whose bits are set, in menu order.
+    private static final class Dishes extends AbstractList<Dish> {
+        private final Dish[] dishes;
+        private final long[] bits;
+        private final int size;
+        // Matches before each word.
+        private final int[] ranks;
+
+        Dishes(Dish[] dishes, long[] bits) {
+            this.dishes = dishes;
+            this.bits = bits;
+            ranks = new int[bits.length];
+            int s = 0;
+            for (int w = 0; w < bits.length; w++) {
+                ranks[w] = s;
+                s += Long.bitCount(bits[w]);
+            }
+            size = s;
+        }
+
+        @Override
+        public int size() { return size; }
+
+        @Override
+        public Dish get(int index) {
+            if (index < 0 || index >= size) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size); }
+            // The last word with at most index matches before it, then the right bit in it.
+            int low = 0;
+            int high = ranks.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (ranks[middle] <= index) { low = middle; } else { high = middle - 1; }
+            }
+            long word = bits[low];
+            for (int skip = index - ranks[low]; skip > 0; skip--) { word &= word - 1; }
+            return dishes[low << 6 | Long.numberOfTrailingZeros(word)];
+        }
+
+        @Override
+        public Iterator<Dish> iterator() {
+            return new Iterator<>() {
+                private int w = 0;
+                private long word = bits.length == 0 ? 0 : bits[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (word == 0 && w + 1 < bits.length) { word = bits[++w]; }
+                    return word != 0;
+                }
+
+                @Override
+                public Dish next() {
+                    if (!hasNext()) { throw new NoSuchElementException(); }
+                    Dish dish = dishes[w << 6 | Long.numberOfTrailingZeros(word)];
+                    word &= word - 1;
+                    return dish;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package org.example.java_learning;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Persistent sorted map, a balanced replacement of Tree and functionalUpdate.
+ * Tree isn't balanced: keys inserted in order make it a linked list, so functionalUpdate copies n nodes per update and recurses n levels deep until the stack overflows. This is an AVL tree: the heights of the two subtrees of any node differ by at most one, so the depth stays below 1.44 log2(n) (29 levels for 10^6 keys).
+ *  - put and remove copy the O(log n) nodes on the path to the key and share everything else with the previous version, which stays valid.
+ *  - get walks down the tree in a loop, without recursion.
+ *  - A Builder (see builder, toBuilder) owns the nodes it creates and updates them in place instead of copying them again, which makes bulk loading several times faster; build() hands them over to an immutable map, after which the builder copies again.
+ *  - merge and diff work on whole subtrees (split/join): a subtree shared by both maps is recognized by identity and skipped, so comparing or merging a version with one derived from it by k updates costs about O(k log n), not O(n). The three-way merge(base, other, resolve) only visits what changed from base to other.
+ * Values must not be null.
+ */
+public final class PersistentTreeMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+    private static final class Node<K, V> {
+        K key;
+        V value;
+        Node<K, V> left;
+        Node<K, V> right;
+        int height;
+        int size;
+        // The Builder allowed to update this node in place, null for nodes of immutable maps.
+        Object owner;
+
+        Node(K key, V value, Node<K, V> left, Node<K, V> right, Object owner) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.owner = owner;
+            update(this);
+        }
+    }
+
+    // A change between two versions: oldValue is null for an added key, newValue for a removed one.
+    public record Change<K, V>(K key, V oldValue, V newValue) {}
+
+    private final Comparator<? super K> comparator;
+    private final Node<K, V> root;
+
+    private PersistentTreeMap(Comparator<? super K> comparator, Node<K, V> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K extends Comparable<? super K>, V> PersistentTreeMap<K, V> empty() {
+        return new PersistentTreeMap<>((Comparator<? super K>) Comparator.naturalOrder(), null);
+    }
+
+    public static <K, V> PersistentTreeMap<K, V> empty(Comparator<? super K> comparator) {
+        return new PersistentTreeMap<>(Objects.requireNonNull(comparator), null);
+    }
+
+    public static <K extends Comparable<? super K>, V> Builder<K, V> builder() { return PersistentTreeMap.<K, V>empty().toBuilder(); }
+
+    public int size() { return size(root); }
+
+    public boolean isEmpty() { return root == null; }
+
+    public V get(K key) {
+        Node<K, V> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c == 0) { return node.value; }
+            node = c < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    public V getOrDefault(K key, V defaultValue) {
+        V value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public boolean containsKey(K key) { return get(key) != null; }
+
+    public PersistentTreeMap<K, V> put(K key, V value) {
+        Node<K, V> newRoot = put(root, key, Objects.requireNonNull(value), null);
+        return newRoot == root ? this : new PersistentTreeMap<>(comparator, newRoot);
+    }
+
+    public PersistentTreeMap<K, V> remove(K key) {
+        Node<K, V> newRoot = remove(root, key, null);
+        return newRoot == root ? this : new PersistentTreeMap<>(comparator, newRoot);
+    }
+
+    // All the entries of both maps, resolve deciding the value of a key present in both (called with this map's value first). The keys of a subtree shared by both maps keep their value without a call to resolve, so resolve must return v for (v, v), as (a, b) -> b or Math::max do. To combine two versions derived from a common one, see merge(base, other, resolve).
+    public PersistentTreeMap<K, V> merge(PersistentTreeMap<K, V> other, BinaryOperator<V> resolve) {
+        checkComparator(other);
+        return new PersistentTreeMap<>(comparator, union(root, other.root, resolve));
+    }
+
+    /**
+     * Three-way merge of this version and other, both derived from base: the changes made from base to other are applied to this version, resolve deciding the value of a key both changed to different values (called with this version's value first). A key removed on one side and changed on the other keeps the changed value.
+     * Only the changes from base to other are visited, found by diff, so merging versions derived from base by k updates costs about O(k log n).
+     */
+    public PersistentTreeMap<K, V> merge(PersistentTreeMap<K, V> base, PersistentTreeMap<K, V> other, BinaryOperator<V> resolve) {
+        checkComparator(base);
+        checkComparator(other);
+        Builder<K, V> merged = toBuilder();
+        base.diff(other, change -> {
+            V mine = get(change.key());
+            if (Objects.equals(mine, change.oldValue())) {
+                // Unchanged here: take their change.
+                if (change.newValue() == null) { merged.remove(change.key()); } else { merged.put(change.key(), change.newValue()); }
+            } else if (mine != null && change.newValue() != null && !mine.equals(change.newValue())) {
+                merged.put(change.key(), Objects.requireNonNull(resolve.apply(mine, change.newValue())));
+            } else if (mine == null) {
+                // Removed here, changed there.
+                merged.put(change.key(), change.newValue());
+            }
+            // Otherwise both made the same change, or this version changed a key they removed: this version's value stays.
+        });
+        return merged.build();
+    }
+
+    // Reports, in key order, what changed from this version to the other one.
+    public void diff(PersistentTreeMap<K, V> other, Consumer<? super Change<K, V>> changes) {
+        checkComparator(other);
+        diff(root, other.root, changes);
+    }
+
+    // Both maps must be sorted the same way for their trees to be walked together.
+    private void checkComparator(PersistentTreeMap<K, V> other) {
+        if (!comparator.equals(other.comparator)) { throw new IllegalArgumentException("Maps sorted by different comparators"); }
+    }
+
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        for (Map.Entry<K, V> entry : this) { action.accept(entry.getKey(), entry.getValue()); }
+    }
+
+    // In key order, with an explicit stack.
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return new Iterator<>() {
+            private final ArrayDeque<Node<K, V>> stack = new ArrayDeque<>();
+            { pushLeft(root); }
+
+            private void pushLeft(Node<K, V> node) {
+                for (; node != null; node = node.left) { stack.push(node); }
+            }
+
+            @Override
+            public boolean hasNext() { return !stack.isEmpty(); }
+
+            @Override
+            public Map.Entry<K, V> next() {
+                if (stack.isEmpty()) { throw new NoSuchElementException(); }
+                Node<K, V> node = stack.pop();
+                pushLeft(node.right);
+                return new AbstractMap.SimpleImmutableEntry<>(node.key, node.value);
+            }
+        };
+    }
+
+    public Builder<K, V> toBuilder() { return new Builder<>(comparator, root); }
+
+    public static final class Builder<K, V> {
+        // An empty map, only for its comparator and the update methods.
+        private final PersistentTreeMap<K, V> tree;
+        private Node<K, V> root;
+        private Object owner = new Object();
+
+        private Builder(Comparator<? super K> comparator, Node<K, V> root) {
+            this.tree = new PersistentTreeMap<>(comparator, null);
+            this.root = root;
+        }
+
+        public Builder<K, V> put(K key, V value) {
+            root = tree.put(root, key, Objects.requireNonNull(value), owner);
+            return this;
+        }
+
+        public Builder<K, V> remove(K key) {
+            root = tree.remove(root, key, owner);
+            return this;
+        }
+
+        public int size() { return PersistentTreeMap.size(root); }
+
+        public PersistentTreeMap<K, V> build() {
+            // The built map shares the nodes, so from now on they must be copied again.
+            owner = new Object();
+            return new PersistentTreeMap<>(tree.comparator, root);
+        }
+    }
+
+    // Updating, with owner null every touched node is copied; with the owner of a Builder, nodes it already owns are updated in place.
+
+    private static <K, V> Node<K, V> editable(Node<K, V> node, Object owner) {
+        if (owner != null && node.owner == owner) { return node; }
+        return new Node<>(node.key, node.value, node.left, node.right, owner);
+    }
+
+    private Node<K, V> put(Node<K, V> node, K key, V value, Object owner) {
+        if (node == null) { return new Node<>(key, value, null, null, owner); }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            if (node.value == value) { return node; }
+            Node<K, V> copy = editable(node, owner);
+            copy.value = value;
+            return copy;
+        }
+        Node<K, V> child = put(c < 0 ? node.left : node.right, key, value, owner);
+        // With an owner the child may have been updated in place, so its height may have changed all the same.
+        if (owner == null && child == (c < 0 ? node.left : node.right)) { return node; }
+        Node<K, V> copy = editable(node, owner);
+        if (c < 0) { copy.left = child; } else { copy.right = child; }
+        return balance(copy, owner);
+    }
+
+    private Node<K, V> remove(Node<K, V> node, K key, Object owner) {
+        if (node == null) { return null; }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) {
+            if (node.left == null) { return node.right; }
+            if (node.right == null) { return node.left; }
+            Node<K, V> min = node.right;
+            while (min.left != null) { min = min.left; }
+            Node<K, V> copy = editable(node, owner);
+            copy.key = min.key;
+            copy.value = min.value;
+            copy.right = removeMin(node.right, owner);
+            return balance(copy, owner);
+        }
+        Node<K, V> child = remove(c < 0 ? node.left : node.right, key, owner);
+        if (owner == null && child == (c < 0 ? node.left : node.right)) { return node; }
+        Node<K, V> copy = editable(node, owner);
+        if (c < 0) { copy.left = child; } else { copy.right = child; }
+        return balance(copy, owner);
+    }
+
+    private static <K, V> Node<K, V> removeMin(Node<K, V> node, Object owner) {
+        if (node.left == null) { return node.right; }
+        Node<K, V> copy = editable(node, owner);
+        copy.left = removeMin(node.left, owner);
+        return balance(copy, owner);
+    }
+
+    // node is editable, its subtrees are balanced and their heights differ by at most 2.
+    private static <K, V> Node<K, V> balance(Node<K, V> node, Object owner) {
+        int difference = height(node.left) - height(node.right);
+        if (difference > 1) {
+            if (height(node.left.left) < height(node.left.right)) { node.left = rotateLeft(editable(node.left, owner), owner); }
+            return rotateRight(node, owner);
+        }
+        if (difference < -1) {
+            if (height(node.right.right) < height(node.right.left)) { node.right = rotateRight(editable(node.right, owner), owner); }
+            return rotateLeft(node, owner);
+        }
+        update(node);
+        return node;
+    }
+
+    private static <K, V> Node<K, V> rotateRight(Node<K, V> node, Object owner) {
+        Node<K, V> left = editable(node.left, owner);
+        node.left = left.right;
+        update(node);
+        left.right = node;
+        update(left);
+        return left;
+    }
+
+    private static <K, V> Node<K, V> rotateLeft(Node<K, V> node, Object owner) {
+        Node<K, V> right = editable(node.right, owner);
+        node.right = right.left;
+        update(node);
+        right.left = node;
+        update(right);
+        return right;
+    }
+
+    private static void update(Node<?, ?> node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+    private static int height(Node<?, ?> node) { return node == null ? 0 : node.height; }
+
+    private static int size(Node<?, ?> node) { return node == null ? 0 : node.size; }
+
+    // Whole-tree operations, all persistent.
+
+    // A tree with the entries of left, then key, then those of right, all of left's keys being smaller than key and all of right's greater. O(|height(left) - height(right)|).
+    private static <K, V> Node<K, V> join(Node<K, V> left, K key, V value, Node<K, V> right) {
+        if (height(left) > height(right) + 1) {
+            Node<K, V> copy = editable(left, null);
+            copy.right = join(left.right, key, value, right);
+            return balance(copy, null);
+        }
+        if (height(right) > height(left) + 1) {
+            Node<K, V> copy = editable(right, null);
+            copy.left = join(left, key, value, right.left);
+            return balance(copy, null);
+        }
+        return new Node<>(key, value, left, right, null);
+    }
+
+    // left and right with nothing in between.
+    private static <K, V> Node<K, V> join2(Node<K, V> left, Node<K, V> right) {
+        if (left == null) { return right; }
+        if (right == null) { return left; }
+        Node<K, V> min = right;
+        while (min.left != null) { min = min.left; }
+        return join(left, min.key, min.value, removeMin(right, null));
+    }
+
+    private record Split<K, V>(Node<K, V> left, Node<K, V> found, Node<K, V> right) {}
+
+    private Split<K, V> split(Node<K, V> node, K key) {
+        if (node == null) { return new Split<>(null, null, null); }
+        int c = comparator.compare(key, node.key);
+        if (c == 0) { return new Split<>(node.left, node, node.right); }
+        if (c < 0) {
+            Split<K, V> split = split(node.left, key);
+            return new Split<>(split.left(), split.found(), join(split.right(), node.key, node.value, node.right));
+        }
+        Split<K, V> split = split(node.right, key);
+        return new Split<>(join(node.left, node.key, node.value, split.left()), split.found(), split.right());
+    }
+
+    private Node<K, V> union(Node<K, V> mine, Node<K, V> theirs, BinaryOperator<V> resolve) {
+        if (mine == theirs || theirs == null) { return mine; }
+        if (mine == null) { return theirs; }
+        Split<K, V> split = split(mine, theirs.key);
+        Node<K, V> left = union(split.left(), theirs.left, resolve);
+        Node<K, V> right = union(split.right(), theirs.right, resolve);
+        V value = split.found() == null ? theirs.value : Objects.requireNonNull(resolve.apply(split.found().value, theirs.value));
+        if (left == theirs.left && right == theirs.right && value == theirs.value) { return theirs; }
+        return join(left, theirs.key, value, right);
+    }
+
+    private void diff(Node<K, V> before, Node<K, V> after, Consumer<? super Change<K, V>> changes) {
+        if (before == after) { return; }
+        if (before == null) { forEachNode(after, node -> changes.accept(new Change<>(node.key, null, node.value))); return; }
+        if (after == null) { forEachNode(before, node -> changes.accept(new Change<>(node.key, node.value, null))); return; }
+        Split<K, V> split = split(before, after.key);
+        diff(split.left(), after.left, changes);
+        if (split.found() == null) { changes.accept(new Change<>(after.key, null, after.value)); }
+        else if (!split.found().value.equals(after.value)) { changes.accept(new Change<>(after.key, split.found().value, after.value)); }
+        diff(split.right(), after.right, changes);
+    }
+
+    private static <K, V> void forEachNode(Node<K, V> node, Consumer<Node<K, V>> action) {
+        ArrayDeque<Node<K, V>> stack = new ArrayDeque<>();
+        while (node != null || !stack.isEmpty()) {
+            for (; node != null; node = node.left) { stack.push(node); }
+            node = stack.pop();
+            action.accept(node);
+            node = node.right;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        forEach((key, value) -> sb.append(sb.length() > 1 ? ", " : "").append(key).append('=').append(value));
+        return sb.append('}').toString();
+    }
+}
@@ -20,5 +20,7 @@ public class Quote {
     public String getShopName() { return shopName; }
     public double getPrice() { return price; }
     public Discount.Code getDiscountCode() { return discountCode; }
+    @Override
+    public String toString() { return shopName + " price is " + price; }
 
 }
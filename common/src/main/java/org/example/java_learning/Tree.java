@@ -12,9 +12,13 @@ public class Tree {
         right = r;
     }
 
+    // A loop rather than a recursive call: an unbalanced tree may be as deep as it has keys (see PersistentTreeMap).
     public static int lookup(String k, int defaultval, Tree t) {
-        if (t == null) { return defaultval; }
-        if (k.equals(t.key)) { return t.val; }
-        return lookup(k, defaultval, k.compareTo(t.key) < 0 ? t.left : t.right);
+        while (t != null) {
+            int c = k.compareTo(t.key);
+            if (c == 0) { return t.val; }
+            t = c < 0 ? t.left : t.right;
+        }
+        return defaultval;
     }
 }
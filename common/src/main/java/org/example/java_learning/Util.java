@@ -2,10 +2,11 @@ package org.example.java_learning;
 
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
-import java.util.Random;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
@@ -13,8 +14,8 @@ import static java.lang.Double.parseDouble;
 import static java.lang.System.currentTimeMillis;
 
 public class Util {
-    private static final Random RANDOM = new Random(0);
-    private static final long DELAY_MILLIS = 1000;
+    private static final Latency.Distribution RANDOM_DELAY =
+        Latency.uniform(Duration.ofMillis(500), Duration.ofMillis(2500));
     private static final DecimalFormat formatter = new DecimalFormat(
 "#.##",
         new DecimalFormatSymbols(Locale.US)
@@ -28,26 +29,23 @@ public class Util {
         System.out.print(obj);
     }
 
+    // Burns a core on purpose to simulate CPU-bound work, use delay() to simulate waiting for a remote call.
     public static void dumbLoopForMillis(long durationInMillis) {
         long end = currentTimeMillis() + durationInMillis;
         while (currentTimeMillis() < end) {}
     }
 
+    // Simulated remote calls go through Latency, see Latency.setDefault() to change their distribution.
     public static void delay() {
-        //long delay = 500 + RANDOM.nextInt(2000);
-        delay(DELAY_MILLIS);
+        Latency.pause();
     }
 
     public static void randomDelay() {
-        delay(500 + RANDOM.nextInt(2000));
+        Latency.pause(RANDOM_DELAY);
     }
 
     public static void delay(long delayMillis) {
-        try {
-            Thread.sleep(delayMillis);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
+        Latency.pauseNanos(TimeUnit.MILLISECONDS.toNanos(delayMillis));
     }
 
     public static double format(double number) {
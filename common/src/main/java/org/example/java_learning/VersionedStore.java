@@ -0,0 +1,95 @@
+package org.example.java_learning;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * The "name versioning" of PersistentDataStructures: a store publishing versions of a PersistentTreeMap, MVCC style.
+ *  - current holds the latest Version in an AtomicReference. A commit applies its update to the current map, which gives a new map sharing most of its nodes, and publishes it with compareAndSet. If another writer committed meanwhile the update is applied again to the newer map: updates must therefore be side-effect free, as functionalUpdate.
+ *  - No locks: a reader takes snapshot() and keeps using it as long as it wants (a long-running statistical analysis), writers go on publishing newer versions; neither waits for the other. Writers only retry, commits() and retries() tell how often.
+ *  - Numbered versions: the last keepVersions versions can be read back by number. Older ones are released (and garbage collected once no reader holds them) unless they were tagged with a name, tagged versions being kept until untagged.
+ */
+public class VersionedStore<K, V> {
+
+    public record Version<K, V>(long number, PersistentTreeMap<K, V> map) {}
+
+    private final AtomicReference<Version<K, V>> current;
+    private final NavigableMap<Long, Version<K, V>> retained = new ConcurrentSkipListMap<>();
+    private final Map<String, Version<K, V>> tags = new ConcurrentHashMap<>();
+    private final int keepVersions;
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    public VersionedStore(PersistentTreeMap<K, V> initial, int keepVersions) {
+        if (keepVersions < 1) { throw new IllegalArgumentException("keepVersions must be positive: " + keepVersions); }
+        this.keepVersions = keepVersions;
+        Version<K, V> first = new Version<>(0, initial);
+        current = new AtomicReference<>(first);
+        retained.put(0L, first);
+    }
+
+    public Version<K, V> snapshot() { return current.get(); }
+
+    public PersistentTreeMap<K, V> map() { return current.get().map(); }
+
+    public V get(K key) { return current.get().map().get(key); }
+
+    // Returns the version committed, or the current one if update changed nothing.
+    public Version<K, V> commit(UnaryOperator<PersistentTreeMap<K, V>> update) {
+        while (true) {
+            Version<K, V> base = current.get();
+            PersistentTreeMap<K, V> map = update.apply(base.map());
+            if (map == base.map()) { return base; }
+            Version<K, V> next = new Version<>(base.number() + 1, map);
+            if (current.compareAndSet(base, next)) {
+                commits.increment();
+                retain(next);
+                return next;
+            }
+            retries.increment();
+        }
+    }
+
+    public Version<K, V> put(K key, V value) { return commit(map -> map.put(key, value)); }
+
+    public Version<K, V> remove(K key) { return commit(map -> map.remove(key)); }
+
+    private void retain(Version<K, V> version) {
+        retained.put(version.number(), version);
+        // Versions may be retained out of order by concurrent commits: one retained late is released by the next commits.
+        retained.headMap(version.number() - keepVersions, true).clear();
+    }
+
+    public Optional<Version<K, V>> version(long number) {
+        Version<K, V> version = retained.get(number);
+        if (version == null) {
+            version = tags.values().stream().filter(v -> v.number() == number).findAny().orElse(null);
+        }
+        return Optional.ofNullable(version);
+    }
+
+    // Keeps the version under this name, whatever the retention of numbered versions, replacing the version previously tagged so.
+    public void tag(String name, Version<K, V> version) { tags.put(name, version); }
+
+    public Version<K, V> tag(String name) {
+        Version<K, V> version = current.get();
+        tag(name, version);
+        return version;
+    }
+
+    public Optional<Version<K, V>> tagged(String name) { return Optional.ofNullable(tags.get(name)); }
+
+    public void untag(String name) { tags.remove(name); }
+
+    public long oldestRetained() { return retained.firstKey(); }
+
+    public long commits() { return commits.sum(); }
+
+    public long retries() { return retries.sum(); }
+}
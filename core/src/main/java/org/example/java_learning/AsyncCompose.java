@@ -0,0 +1,107 @@
+package org.example.java_learning;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The five styles of AsyncSyncAPI computing combine(f(x), g(x)), as reusable combinators taking any f, g and combine instead of Fn.fi, Fn.gi and a TupleInt.
+ *  - sequential: f then g in the calling thread.
+ *  - threads: f and g in two new platform threads, joined.
+ *  - futures: f and g submitted to an ExecutorService, waited for with Future.get.
+ *  - completableFuture: f and g supplied asynchronously and combined with thenCombine, nothing blocks.
+ *  - callbacks: f and g run asynchronously and hand their results to an IntCombiner, which calls onResult once both arrived.
+ * AsyncComposeBenchmark (streams_benchmarks) measures what each style costs per composition, which decides the style for tasks of a few microseconds: below some size the sequential call wins whatever the number of cores.
+ */
+public class AsyncCompose {
+
+    public static int sequential(IntUnaryOperator f, IntUnaryOperator g, int x, IntBinaryOperator combine) {
+        return combine.applyAsInt(f.applyAsInt(x), g.applyAsInt(x));
+    }
+
+    public static int threads(IntUnaryOperator f, IntUnaryOperator g, int x, IntBinaryOperator combine) throws InterruptedException {
+        int[] results = new int[2];
+        Thread t1 = new Thread(() -> results[0] = f.applyAsInt(x));
+        Thread t2 = new Thread(() -> results[1] = g.applyAsInt(x));
+        t1.start();
+        t2.start();
+        // join() makes the threads' writes visible.
+        t1.join();
+        t2.join();
+        return combine.applyAsInt(results[0], results[1]);
+    }
+
+    public static int futures(IntUnaryOperator f, IntUnaryOperator g, int x, IntBinaryOperator combine, ExecutorService executor)
+        throws InterruptedException, ExecutionException {
+        Future<Integer> y = executor.submit(() -> f.applyAsInt(x));
+        Future<Integer> z = executor.submit(() -> g.applyAsInt(x));
+        return combine.applyAsInt(y.get(), z.get());
+    }
+
+    public static CompletableFuture<Integer> completableFuture(IntUnaryOperator f, IntUnaryOperator g, int x, IntBinaryOperator combine, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> f.applyAsInt(x), executor)
+            .thenCombine(CompletableFuture.supplyAsync(() -> g.applyAsInt(x), executor), combine::applyAsInt);
+    }
+
+    public static void callbacks(IntUnaryOperator f, IntUnaryOperator g, int x, IntBinaryOperator combine, Executor executor, IntConsumer onResult) {
+        IntCombiner combiner = new IntCombiner(combine, onResult);
+        executor.execute(() -> combiner.acceptLeft(f.applyAsInt(x)));
+        executor.execute(() -> combiner.acceptRight(g.applyAsInt(x)));
+    }
+
+    /**
+     * Joins two callbacks without locking, the fix for the race of parallelCallbackStyle.
+     * Each side stores its value and then sets its bit in state with an atomic OR. The side seeing the other bit already set is the last one: the atomic operations order the other side's store before its own read, so it combines two complete values and calls onResult, exactly once.
+     * Each side may be called only once, a second call throws IllegalStateException.
+     */
+    public static final class IntCombiner {
+        private static final int LEFT = 1;
+        private static final int RIGHT = 2;
+        private static final VarHandle STATE;
+        static {
+            try {
+                STATE = MethodHandles.lookup().findVarHandle(IntCombiner.class, "state", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final IntBinaryOperator combine;
+        private final IntConsumer onResult;
+        private volatile int state;
+        private int left;
+        private int right;
+
+        public IntCombiner(IntBinaryOperator combine, IntConsumer onResult) {
+            this.combine = combine;
+            this.onResult = onResult;
+        }
+
+        public void acceptLeft(int value) {
+            if ((state & LEFT) != 0) { throw new IllegalStateException("Left value already accepted"); }
+            left = value;
+            arrive(LEFT);
+        }
+
+        public void acceptRight(int value) {
+            if ((state & RIGHT) != 0) { throw new IllegalStateException("Right value already accepted"); }
+            right = value;
+            arrive(RIGHT);
+        }
+
+        private void arrive(int side) {
+            int previous = (int) STATE.getAndBitwiseOr(this, side);
+            if ((previous & side) != 0) { throw new IllegalStateException("Value already accepted"); }
+            if ((previous | side) == (LEFT | RIGHT)) {
+                onResult.accept(combine.applyAsInt(left, right));
+            }
+        }
+    }
+}
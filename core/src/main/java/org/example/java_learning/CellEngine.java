@@ -0,0 +1,232 @@
+package org.example.java_learning;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Spreadsheet-like dataflow engine, the incremental version of SimpleCell/ArithmeticCell.
+ * ArithmeticCell recomputes and notifies as soon as any input changes, so in a diamond (C2=C1+1, C3=C1*2, C4=C2+C3) C4 is recomputed twice per change of C1, and the first time it's computed from a new C2 and an old C3, a value that never should have existed (a glitch).
+ * Here a change is propagated level by level, the level of a cell being one more than the highest level of its inputs:
+ *  - all the inputs of a cell are final before the cell is recomputed, so it is recomputed at most once per update and never sees intermediate values;
+ *  - a cell whose new value equals the old one doesn't propagate further;
+ *  - cells of the same level don't depend on each other, so a large level is recomputed in parallel;
+ *  - many input changes can be committed as one Transaction, paying for the shared part of the graph only once.
+ * A formula can only refer to cells that already exist, which rules out cycles. Cells are ints indexing primitive arrays so that millions of them fit comfortably. The engine isn't meant to be updated by several threads at once: commits are serialized.
+ */
+public class CellEngine {
+    // Levels with at least this many cells to recompute are processed in parallel.
+    private static final int PARALLEL_THRESHOLD = 4_096;
+
+    @FunctionalInterface
+    public interface Formula {
+        // inputs are the ids of the cell's inputs, read their values as values[inputs[i]].
+        double compute(double[] values, int[] inputs);
+    }
+
+    public static final Formula SUM = (values, inputs) -> {
+        double sum = 0;
+        for (int input : inputs) { sum += values[input]; }
+        return sum;
+    };
+    public static final Formula PRODUCT = (values, inputs) -> {
+        double product = 1;
+        for (int input : inputs) { product *= values[input]; }
+        return product;
+    };
+
+    private int size;
+    private double[] values = new double[16];
+    private int[] levels = new int[16];
+    private Formula[] formulas = new Formula[16];
+    private int[][] inputs = new int[16][];
+    private int maxLevel;
+    // Dependents in compressed form: the dependents of cell c are dependents[firstDependent[c] .. firstDependent[c + 1]). Rebuilt after new formulas were added.
+    private int[] firstDependent;
+    private int[] dependents;
+    private boolean graphChanged = true;
+    // A cell is scheduled in the current commit if scheduledIn[cell] == epoch, so nothing has to be cleared between commits.
+    private int[] scheduledIn = new int[16];
+    private int epoch;
+    // The last change of a cell in the transaction being committed, so that a cell set several times changes (and notifies) once.
+    private int[] lastSet = new int[16];
+    // The cells to recompute by level, kept from one commit to the next, and the lowest and highest levels scheduled in the current commit: a commit only looks at the levels its changes reach, not at all maxLevel levels.
+    private IntList[] byLevel = new IntList[1];
+    private int lowestScheduled;
+    private int highestScheduled;
+    private DoubleConsumer[] listeners = new DoubleConsumer[16];
+
+    public synchronized int input(double value) {
+        int id = add(0, null, null);
+        values[id] = value;
+        return id;
+    }
+
+    public synchronized int formula(Formula formula, int... cells) {
+        int level = 0;
+        for (int cell : cells) {
+            if (cell < 0 || cell >= size) { throw new IllegalArgumentException("Unknown cell " + cell); }
+            level = Math.max(level, levels[cell]);
+        }
+        int id = add(level + 1, formula, cells.clone());
+        values[id] = formula.compute(values, inputs[id]);
+        return id;
+    }
+
+    private int add(int level, Formula formula, int[] cellInputs) {
+        if (size == values.length) {
+            int capacity = size * 2;
+            values = Arrays.copyOf(values, capacity);
+            levels = Arrays.copyOf(levels, capacity);
+            formulas = Arrays.copyOf(formulas, capacity);
+            inputs = Arrays.copyOf(inputs, capacity);
+            scheduledIn = Arrays.copyOf(scheduledIn, capacity);
+            lastSet = Arrays.copyOf(lastSet, capacity);
+            listeners = Arrays.copyOf(listeners, capacity);
+        }
+        int id = size++;
+        levels[id] = level;
+        formulas[id] = formula;
+        inputs[id] = cellInputs;
+        maxLevel = Math.max(maxLevel, level);
+        if (formula != null) { graphChanged = true; }
+        return id;
+    }
+
+    public synchronized double get(int cell) { return values[cell]; }
+
+    public synchronized int size() { return size; }
+
+    // Called with the new value after every commit that changed the cell.
+    public synchronized void onChange(int cell, DoubleConsumer listener) {
+        DoubleConsumer current = listeners[cell];
+        listeners[cell] = current == null ? listener : current.andThen(listener);
+    }
+
+    public Transaction transaction() { return new Transaction(); }
+
+    // Same as a transaction with a single change, returns the number of recomputed cells.
+    public int set(int cell, double value) { return transaction().set(cell, value).commit(); }
+
+    public class Transaction {
+        private int[] cells = new int[8];
+        private double[] newValues = new double[8];
+        private int count;
+
+        public Transaction set(int cell, double value) {
+            if (count == cells.length) {
+                cells = Arrays.copyOf(cells, count * 2);
+                newValues = Arrays.copyOf(newValues, count * 2);
+            }
+            cells[count] = cell;
+            newValues[count++] = value;
+            return this;
+        }
+
+        // Returns the number of recomputed cells.
+        public int commit() { return CellEngine.this.commit(cells, newValues, count); }
+    }
+
+    private synchronized int commit(int[] cells, double[] newValues, int count) {
+        if (graphChanged) { buildDependents(); }
+        // Checked before anything is written, so that an invalid transaction changes nothing.
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            if (cell < 0 || cell >= size) { throw new IllegalArgumentException("Unknown cell " + cell); }
+            if (formulas[cell] != null) { throw new IllegalArgumentException("Cell " + cell + " is a formula"); }
+            lastSet[cell] = i;
+        }
+        epoch++;
+        if (byLevel.length <= maxLevel) { byLevel = Arrays.copyOf(byLevel, maxLevel + 1); }
+        lowestScheduled = Integer.MAX_VALUE;
+        highestScheduled = 0;
+        IntList changed = new IntList();
+        for (int i = 0; i < count; i++) {
+            int cell = cells[i];
+            // Only the last value set counts: set back to its current value, a cell hasn't changed. Double.compare, so that NaN to NaN isn't a change.
+            if (lastSet[cell] == i && Double.compare(values[cell], newValues[i]) != 0) {
+                values[cell] = newValues[i];
+                changed.add(cell);
+                scheduleDependents(cell);
+            }
+        }
+        int recomputed = 0;
+        try {
+            // Dependents are always of a higher level than the cell scheduling them, so highestScheduled may grow during the loop but never a level already passed.
+            for (int level = lowestScheduled; level <= highestScheduled; level++) {
+                IntList scheduled = byLevel[level];
+                if (scheduled == null || scheduled.size == 0) { continue; }
+                recomputed += scheduled.size;
+                // Cells of one level only read lower levels, which are final by now, and each writes its own slot.
+                boolean[] differs = new boolean[scheduled.size];
+                IntStream range = IntStream.range(0, scheduled.size);
+                if (scheduled.size >= PARALLEL_THRESHOLD) { range = range.parallel(); }
+                range.forEach(i -> {
+                    int cell = scheduled.items[i];
+                    double value = formulas[cell].compute(values, inputs[cell]);
+                    differs[i] = Double.compare(value, values[cell]) != 0;
+                    values[cell] = value;
+                });
+                for (int i = 0; i < scheduled.size; i++) {
+                    if (differs[i]) {
+                        changed.add(scheduled.items[i]);
+                        scheduleDependents(scheduled.items[i]);
+                    }
+                }
+            }
+        } finally {
+            // Emptied for the next commit, even if a formula threw.
+            for (int level = lowestScheduled; level <= highestScheduled; level++) {
+                if (byLevel[level] != null) { byLevel[level].size = 0; }
+            }
+        }
+        for (int i = 0; i < changed.size; i++) {
+            int cell = changed.items[i];
+            if (listeners[cell] != null) { listeners[cell].accept(values[cell]); }
+        }
+        return recomputed;
+    }
+
+    private void scheduleDependents(int cell) {
+        for (int d = firstDependent[cell]; d < firstDependent[cell + 1]; d++) {
+            int dependent = dependents[d];
+            if (scheduledIn[dependent] != epoch) {
+                scheduledIn[dependent] = epoch;
+                int levelOf = levels[dependent];
+                IntList level = byLevel[levelOf];
+                if (level == null) { level = byLevel[levelOf] = new IntList(); }
+                level.add(dependent);
+                lowestScheduled = Math.min(lowestScheduled, levelOf);
+                highestScheduled = Math.max(highestScheduled, levelOf);
+            }
+        }
+    }
+
+    private void buildDependents() {
+        firstDependent = new int[size + 1];
+        for (int cell = 0; cell < size; cell++) {
+            if (inputs[cell] == null) { continue; }
+            for (int input : inputs[cell]) { firstDependent[input + 1]++; }
+        }
+        for (int cell = 0; cell < size; cell++) { firstDependent[cell + 1] += firstDependent[cell]; }
+        dependents = new int[firstDependent[size]];
+        int[] next = Arrays.copyOf(firstDependent, size);
+        for (int cell = 0; cell < size; cell++) {
+            if (inputs[cell] == null) { continue; }
+            for (int input : inputs[cell]) { dependents[next[input]++] = cell; }
+        }
+        graphChanged = false;
+    }
+
+    // Minimal growable int array, to keep millions of cell ids unboxed.
+    private static class IntList {
+        int[] items = new int[16];
+        int size;
+
+        void add(int item) {
+            if (size == items.length) { items = Arrays.copyOf(items, size * 2); }
+            items[size++] = item;
+        }
+    }
+
+}
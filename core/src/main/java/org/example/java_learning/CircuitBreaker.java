@@ -0,0 +1,123 @@
+package org.example.java_learning;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count-based circuit breaker.
+ *  - CLOSED: calls go through and their outcome is recorded in a sliding window of the last windowSize calls. Once the window is full and the rate of failed or slow ones reaches its threshold, the breaker opens.
+ *  - OPEN: calls are rejected immediately, without waiting for a timeout. After openDuration the breaker lets a few trial calls through.
+ *  - HALF_OPEN: at most halfOpenCalls trial calls are permitted. If all of them succeed in time the breaker closes again, the first bad one opens it again.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final double slowCallRateThreshold;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // Ring buffer of the outcomes of the last windowSize calls, guarded by this.
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSucceeded;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timesOpened = new AtomicLong();
+
+    public CircuitBreaker(int windowSize, double failureRateThreshold, Duration slowCallThreshold, double slowCallRateThreshold, Duration openDuration, int halfOpenCalls) {
+        if (windowSize <= 0 || halfOpenCalls <= 0) { throw new IllegalArgumentException("windowSize and halfOpenCalls must be positive"); }
+        this.windowSize = windowSize;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    // Must be called before every call; a call permitted here must report its outcome with onResult.
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    public synchronized void onResult(long durationNanos, boolean success) {
+        boolean isSlow = durationNanos >= slowCallNanos;
+        switch (state) {
+            case HALF_OPEN -> {
+                if (!success || isSlow) { open(); }
+                else if (++halfOpenSucceeded == halfOpenCalls) { close(); }
+            }
+            case CLOSED -> {
+                record(!success, isSlow);
+                if (recorded == windowSize
+                    && ((double) failures / recorded >= failureRateThreshold || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+                    open();
+                }
+            }
+            // A late result of a call permitted before the breaker opened.
+            case OPEN -> {}
+        }
+    }
+
+    private void record(boolean isFailure, boolean isSlow) {
+        if (recorded == windowSize) {
+            if (failed[next]) { failures--; }
+            if (slow[next]) { slowCalls--; }
+        } else {
+            recorded++;
+        }
+        failed[next] = isFailure;
+        slow[next] = isSlow;
+        if (isFailure) { failures++; }
+        if (isSlow) { slowCalls++; }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        timesOpened.incrementAndGet();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = recorded = failures = slowCalls = 0;
+        Arrays.fill(failed, false);
+        Arrays.fill(slow, false);
+    }
+
+    public synchronized State getState() { return state; }
+
+    public long getRejected() { return rejected.get(); }
+
+    public long getTimesOpened() { return timesOpened.get(); }
+}
@@ -0,0 +1,355 @@
+package org.example.java_learning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Operators for java.util.concurrent.Flow publishers.
+ * Chaining Processors, like TempProcessor, puts one Subscriber per stage between the source and the final Subscriber, and every element goes through all of them. Here consecutive synchronous stages (map, filter, transform, sample, window) are fused under a single Subscriber: each stage calls the next one directly, as the Sinks of java.util.stream do, with no Subscription, no demand and no terminal signals per stage. Every stage has its own call to the next one, so a JIT compiler sees one or two receiver classes at each call and can inline the whole chain, which a loop calling all the stages through one interface call wouldn't allow.
+ * transform mutates an element in place instead of creating a new one, which together with a source reusing pooled mutable events gives a pipeline that doesn't allocate per element.
+ * buffer is the only asynchronous boundary: it takes everything the upstream sends into a bounded buffer and hands elements to the downstream as it requests them, dropping the newest (DROP) or the oldest (LATEST) elements when the buffer is full, or failing (ERROR). It requests everything from the upstream, so it never slows a source down: its memory is bounded by dropping (or failing), not by backpressure. It keeps references to the elements it holds, so pooled mutable events must be copied (map) before a buffer.
+ * FlowOps is immutable: every operator returns a new FlowOps, and the stages' state is created anew for each subscription.
+ */
+public class FlowOps<T> {
+    public enum Overflow { DROP, LATEST, ERROR }
+
+    // A synchronous stage, passing what it makes of an element on to next, or nothing to drop it. None of them passes on more than one element per element received.
+    private abstract static class Stage {
+        Stage next;
+
+        abstract void accept(Object item);
+    }
+
+    private final Publisher<?> source;
+    private final List<Supplier<Stage>> stages;
+
+    private FlowOps(Publisher<?> source, List<Supplier<Stage>> stages) {
+        this.source = source;
+        this.stages = stages;
+    }
+
+    public static <T> FlowOps<T> from(Publisher<T> source) {
+        return new FlowOps<>(Objects.requireNonNull(source), List.of());
+    }
+
+    private <R> FlowOps<R> with(Supplier<Stage> stage) {
+        List<Supplier<Stage>> fused = new ArrayList<>(stages);
+        fused.add(stage);
+        return new FlowOps<>(source, List.copyOf(fused));
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> FlowOps<R> map(Function<? super T, ? extends R> mapper) {
+        return with(() -> new Stage() {
+            @Override
+            void accept(Object item) { next.accept(Objects.requireNonNull(mapper.apply((T) item), "mapper returned null")); }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public FlowOps<T> filter(Predicate<? super T> predicate) {
+        return with(() -> new Stage() {
+            @Override
+            void accept(Object item) {
+                if (predicate.test((T) item)) { next.accept(item); }
+            }
+        });
+    }
+
+    // Mutates the element and passes the same instance on.
+    @SuppressWarnings("unchecked")
+    public FlowOps<T> transform(Consumer<? super T> mutator) {
+        return with(() -> new Stage() {
+            @Override
+            void accept(Object item) {
+                mutator.accept((T) item);
+                next.accept(item);
+            }
+        });
+    }
+
+    // Passes on every n-th element only.
+    public FlowOps<T> sample(int n) {
+        if (n <= 0) { throw new IllegalArgumentException("n <= 0: " + n); }
+        return with(() -> new Stage() {
+            private int count;
+            @Override
+            void accept(Object item) {
+                if (++count < n) { return; }
+                count = 0;
+                next.accept(item);
+            }
+        });
+    }
+
+    // Groups consecutive elements into lists of size elements, an incomplete last window is dropped.
+    @SuppressWarnings("unchecked")
+    public FlowOps<List<T>> window(int size) {
+        if (size <= 0) { throw new IllegalArgumentException("size <= 0: " + size); }
+        return with(() -> new Stage() {
+            private List<T> window = new ArrayList<>(size);
+            @Override
+            void accept(Object item) {
+                window.add((T) item);
+                if (window.size() < size) { return; }
+                List<T> full = window;
+                window = new ArrayList<>(size);
+                next.accept(full);
+            }
+        });
+    }
+
+    public FlowOps<T> buffer(int capacity, Overflow overflow) {
+        if (capacity <= 0) { throw new IllegalArgumentException("capacity <= 0: " + capacity); }
+        return new FlowOps<>(new BufferPublisher<>(toPublisher(), capacity, overflow), List.of());
+    }
+
+    @SuppressWarnings("unchecked")
+    public Publisher<T> toPublisher() {
+        if (stages.isEmpty()) { return (Publisher<T>) source; }
+        return subscriber -> {
+            FusedSubscriber<T> fused = new FusedSubscriber<>(subscriber);
+            // Linked from the last stage back to the first.
+            Stage next = fused.last;
+            for (int i = stages.size() - 1; i >= 0; i--) {
+                Stage stage = stages.get(i).get();
+                stage.next = next;
+                next = stage;
+            }
+            fused.first = next;
+            source.subscribe(fused);
+        };
+    }
+
+    public void subscribe(Subscriber<? super T> subscriber) { toPublisher().subscribe(subscriber); }
+
+    // Runs all the fused stages and is at the same time the Subscription of the downstream, forwarding its requests upstream.
+    private static class FusedSubscriber<R> implements Subscriber<Object>, Subscription {
+        private final Subscriber<? super R> downstream;
+        // The end of the chain keeps what reached it, for onNext to hand it to the downstream outside of the stages' try.
+        private final Stage last = new Stage() {
+            @Override
+            void accept(Object item) { output = item; }
+        };
+        private Stage first;
+        private Object output;
+        private Subscription upstream;
+        private boolean done;
+        // Once the downstream has requested Long.MAX_VALUE, the demand is unbounded and a dropped element needn't be made up for.
+        private volatile boolean unbounded;
+
+        FusedSubscriber(Subscriber<? super R> downstream) { this.downstream = downstream; }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            upstream = subscription;
+            downstream.onSubscribe(this);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onNext(Object item) {
+            if (done) { return; }
+            try {
+                first.accept(item);
+            } catch (Throwable t) {
+                output = null;
+                done = true;
+                upstream.cancel();
+                downstream.onError(t);
+                return;
+            }
+            Object value = output;
+            if (value == null) {
+                // Dropped by a stage: the downstream hasn't got the element it asked for, so ask the upstream for another one.
+                if (!unbounded) { upstream.request(1); }
+                return;
+            }
+            output = null;
+            downstream.onNext((R) value);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) { return; }
+            done = true;
+            downstream.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) { return; }
+            done = true;
+            downstream.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n == Long.MAX_VALUE) { unbounded = true; }
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() { upstream.cancel(); }
+    }
+
+    private static class BufferPublisher<T> implements Publisher<T> {
+        private final Publisher<T> upstream;
+        private final int capacity;
+        private final Overflow overflow;
+
+        BufferPublisher(Publisher<T> upstream, int capacity, Overflow overflow) {
+            this.upstream = upstream;
+            this.capacity = capacity;
+            this.overflow = overflow;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            upstream.subscribe(new BufferSubscriber<>(subscriber, capacity, overflow));
+        }
+    }
+
+    private static class BufferSubscriber<T> implements Subscriber<T>, Subscription {
+        private final Subscriber<? super T> downstream;
+        private final Overflow overflow;
+        // Ring buffer, guarded by itself: with LATEST both the upstream and the downstream side remove elements.
+        private final Object[] ring;
+        private int head;
+        private int size;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private Subscription upstream;
+        private volatile boolean cancelled;
+        private volatile boolean upstreamDone;
+        private volatile Throwable error;
+        private long emitted;
+
+        BufferSubscriber(Subscriber<? super T> downstream, int capacity, Overflow overflow) {
+            this.downstream = downstream;
+            this.overflow = overflow;
+            this.ring = new Object[capacity];
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            upstream = subscription;
+            downstream.onSubscribe(this);
+            // The buffer decides what to keep, so the upstream can send at its own pace.
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T item) {
+            if (upstreamDone) { return; }
+            boolean overflowed = false;
+            synchronized (ring) {
+                if (size < ring.length) {
+                    ring[(head + size++) % ring.length] = item;
+                } else if (overflow == Overflow.LATEST) {
+                    ring[head] = item;
+                    head = (head + 1) % ring.length;
+                } else if (overflow == Overflow.ERROR) {
+                    // Discard what is buffered too, so the error reaches the (slow) downstream without waiting for it to catch up.
+                    overflowed = true;
+                    Arrays.fill(ring, null);
+                    size = 0;
+                }
+                // DROP: the new element is ignored.
+            }
+            if (overflowed && error == null) {
+                upstream.cancel();
+                error = new IllegalStateException("Buffer of " + ring.length + " elements is full");
+                upstreamDone = true;
+            }
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("non-positive request: " + n);
+                upstreamDone = true;
+                upstream.cancel();
+            } else {
+                requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+        }
+
+        @SuppressWarnings("unchecked")
+        private T poll() {
+            synchronized (ring) {
+                if (size == 0) { return null; }
+                T item = (T) ring[head];
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+                return item;
+            }
+        }
+
+        private boolean isEmpty() {
+            synchronized (ring) { return size == 0; }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) { return; }
+            int missed = 1;
+            do {
+                long r = requested.get();
+                while (emitted != r && !cancelled) {
+                    // Read before polling: if the upstream was done and the buffer is empty, nothing more can come.
+                    boolean finished = upstreamDone;
+                    T item = poll();
+                    if (item == null) {
+                        if (finished) { terminate(); return; }
+                        break;
+                    }
+                    downstream.onNext(item);
+                    emitted++;
+                }
+                if (cancelled) { return; }
+                if (upstreamDone && isEmpty()) { terminate(); return; }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void terminate() {
+            cancelled = true;
+            Throwable t = error;
+            if (t != null) { downstream.onError(t); }
+            else { downstream.onComplete(); }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.java_learning;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.example.java_learning.JavaConcurrencyEnhancedMain.CompletableFutureInDetails.Shop;
+
+import static java.util.stream.Collectors.toList;
+import static org.example.java_learning.ExchangeService.Money;
+
+/**
+ * BestPriceFinder that cuts tail latency instead of only failing on it.
+ *  - Hedging: if a shop hasn't answered after the hedge delay, the same request is sent once more and whichever answer comes first wins. The delay is the configured percentile of that shop's own latency histogram, so only the slowest few percent of calls are duplicated.
+ *  - Deadline: every quote has one end-to-end Deadline. The discount and exchange-rate calls get only the time left, and a stage isn't even started once the deadline has passed.
+ */
+public class HedgedPriceFinder {
+    // Until a shop has this many samples its hedge delay is the initial one.
+    private static final int MIN_SAMPLES = 20;
+
+    private final List<Shop> shops;
+    private final Executor executor;
+    private final double hedgePercentile;
+    private final Duration initialHedgeDelay;
+    private final Duration timeout;
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger hedges = new AtomicInteger();
+
+    // hedgePercentile is a fraction, as LatencyHistogram.percentile takes it: 0.95 hedges the slowest 5% of calls.
+    public HedgedPriceFinder(List<Shop> shops, Executor executor, double hedgePercentile, Duration initialHedgeDelay, Duration timeout) {
+        if (!(hedgePercentile > 0 && hedgePercentile <= 1)) { throw new IllegalArgumentException("hedgePercentile not in (0, 1]: " + hedgePercentile); }
+        this.shops = List.copyOf(shops);
+        this.executor = executor;
+        this.hedgePercentile = hedgePercentile;
+        this.initialHedgeDelay = initialHedgeDelay;
+        this.timeout = timeout;
+        this.shops.forEach(shop -> latencies.put(shop.getName(), new LatencyHistogram()));
+    }
+
+    // An absolute point in time, in System.nanoTime() terms, that all the stages of a request share.
+    public record Deadline(long expiresAtNanos) {
+        public static Deadline after(Duration timeout) { return new Deadline(System.nanoTime() + timeout.toNanos()); }
+        public long remainingNanos() { return expiresAtNanos - System.nanoTime(); }
+        public boolean isExpired() { return remainingNanos() <= 0; }
+
+        // Fails the future with a TimeoutException if it isn't completed by the deadline.
+        public <T> CompletableFuture<T> bound(CompletableFuture<T> future) {
+            return future.orTimeout(Math.max(remainingNanos(), 0), TimeUnit.NANOSECONDS);
+        }
+        // Runs the supplier only if there is still time for it, and no longer than the time left.
+        public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+            if (isExpired()) { return CompletableFuture.failedFuture(new TimeoutException("Deadline expired")); }
+            return bound(CompletableFuture.supplyAsync(supplier, executor));
+        }
+    }
+
+    public List<String> findPrices(String product) {
+        Deadline deadline = Deadline.after(timeout);
+        List<CompletableFuture<String>> priceFutures = shops.stream()
+            .map(shop -> getDiscountedPrice(shop, product, deadline)
+                .exceptionally(t -> shop.getName() + " price is unavailable: " + describe(t)))
+            .collect(toList());
+        return priceFutures.stream().map(CompletableFuture::join).collect(toList());
+    }
+
+    public List<String> findPricesInUSD(String product) {
+        Deadline deadline = Deadline.after(timeout);
+        List<CompletableFuture<String>> priceFutures = shops.stream()
+            .map(shop -> getPriceInUSD(shop, product, deadline)
+                .thenApply(price -> shop.getName() + " price is " + price)
+                .exceptionally(t -> shop.getName() + " price is unavailable: " + describe(t)))
+            .collect(toList());
+        return priceFutures.stream().map(CompletableFuture::join).collect(toList());
+    }
+
+    public CompletableFuture<String> getDiscountedPrice(Shop shop, String product, Deadline deadline) {
+        return hedged(shop, () -> shop.getPrice(product), deadline)
+            .thenApply(Quote::parse)
+            // The discount service gets only what is left of the deadline.
+            .thenCompose(quote -> deadline.supplyAsync(() -> Discount.applyDiscount(quote), executor));
+    }
+
+    public CompletableFuture<Double> getPriceInUSD(Shop shop, String product, Deadline deadline) {
+        // Fall back to the default rate when the exchange service is slow, but never wait past the deadline to do so.
+        CompletableFuture<Double> rate = CompletableFuture
+            .supplyAsync(() -> ExchangeService.getRate(Money.EUR, Money.USD), executor)
+            .completeOnTimeout(ExchangeService.DEFAULT_RATE, Math.max(deadline.remainingNanos() / 2, 0), TimeUnit.NANOSECONDS);
+        return hedged(shop, () -> shop.getBasePrice(product), deadline)
+            .thenCombine(rate, (price, r) -> price * r);
+    }
+
+    // The first successful answer of up to two attempts, the second one started only if the first is slower than the shop's hedge delay.
+    private <T> CompletableFuture<T> hedged(Shop shop, Supplier<T> call, Deadline deadline) {
+        if (deadline.isExpired()) { return CompletableFuture.failedFuture(new TimeoutException("Deadline expired")); }
+        LatencyHistogram histogram = latencies.get(shop.getName());
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        // Decided before the primary starts, as the number of failures that fail the result depends on it: with no time left for a hedge, a single failure is final.
+        long hedgeDelay = hedgeDelayNanos(histogram);
+        boolean hedge = hedgeDelay < deadline.remainingNanos();
+        int attempts = hedge ? 2 : 1;
+        CompletableFuture.supplyAsync(timed(call, histogram), executor)
+            .whenComplete((value, t) -> settle(result, value, t, failures, attempts));
+        if (hedge) {
+            Executor delayed = CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.NANOSECONDS, executor);
+            CompletableFuture.runAsync(() -> {
+                if (result.isDone()) { return; }
+                hedges.incrementAndGet();
+                CompletableFuture.supplyAsync(timed(call, histogram), executor)
+                    .whenComplete((value, t) -> settle(result, value, t, failures, attempts));
+            }, delayed);
+        }
+        return deadline.bound(result);
+    }
+
+    private static <T> void settle(CompletableFuture<T> result, T value, Throwable t, AtomicInteger failures, int attempts) {
+        if (t == null) { result.complete(value); }
+        else if (failures.incrementAndGet() == attempts) { result.completeExceptionally(t); }
+    }
+
+    private static <T> Supplier<T> timed(Supplier<T> call, LatencyHistogram histogram) {
+        return () -> {
+            long start = System.nanoTime();
+            T value = call.get();
+            histogram.record(System.nanoTime() - start);
+            return value;
+        };
+    }
+
+    private long hedgeDelayNanos(LatencyHistogram histogram) {
+        if (histogram.count() < MIN_SAMPLES) { return initialHedgeDelay.toNanos(); }
+        return histogram.percentile(hedgePercentile);
+    }
+
+    public LatencyHistogram latencyOf(Shop shop) { return latencies.get(shop.getName()); }
+
+    public int hedgesSent() { return hedges.get(); }
+
+    private static String describe(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        return cause.getClass().getSimpleName();
+    }
+}
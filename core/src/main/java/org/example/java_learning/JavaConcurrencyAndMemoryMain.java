@@ -117,6 +117,7 @@ For example, let’s look at a simplified version of a queue that is safe for mu
         }
     }
 !!In general, most developers shouldn’t roll their own classes like the one in this example—instead, make use of the libraries and components that the Java platform provides for you.
+Besides ignoring interrupts, WaitingQueue is unbounded, allocates a node per element, serializes producers and consumers on one monitor and wakes every waiting thread on every push. RingBufferQueue is a bounded array-based replacement: producers and consumers claim slots with a CAS, waiting is done by a pluggable WaitStrategy, put()/take() throw InterruptedException, and offerAll()/drainTo() move batches. RingBufferQueueBenchmark (streams_benchmarks) compares both with ArrayBlockingQueue and LinkedTransferQueue.
 }
 }
 */
@@ -10,6 +10,8 @@ import java.util.concurrent.Flow.Publisher;
 import java.util.concurrent.Flow.Subscriber;
 import java.util.concurrent.Flow.Subscription;
 import java.util.concurrent.Flow.Processor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
@@ -100,6 +102,7 @@ Other abstractions of threads: non-nested with method calls.
         }
         Fn.test(AsyncSyncAPI::parallelCompletableFuture, "testParallelCompletableFuture");
         Fn.test(AsyncSyncAPI::parallelCallbackStyle, "testParallelCallbackStyle");
+        Fn.test(AsyncSyncAPI::parallelCallbackStyleCombined, "testParallelCallbackStyleCombined");
 
         AsyncSyncAPI.doComplexStuffWithWaitingInTheMiddle();
 
@@ -262,6 +265,24 @@ Other abstractions of threads: non-nested with method calls.
         //  - This reactive-style API is intended to react to a sequence of events, not to single results, for which Futures are more appropriate.
         // Note that this reactive style of programming allows methods f and g to invoke their callback dealWithResult multiple times. The original versions of f and g were obliged to use a return that can be performed only once. Similarly, a Future can be completed only once, and its result is available to get(). In a sense, the reactive-style asynchronous API naturally enables a sequence (in a stream-wise way) of values, whereas the Future-style API corresponds to a one-shot conceptual framework.
         }
+        // The first answer without locking: AsyncCompose.IntCombiner lets each callback publish its value with an atomic OR on a bit set, and only the last one to arrive, seeing both values, reports the sum. Here f and g really run asynchronously, so the caller waits for that report.
+        public static void parallelCallbackStyleCombined(TupleInt res, int x) {
+            CountDownLatch done = new CountDownLatch(1);
+            AsyncCompose.IntCombiner combiner = new AsyncCompose.IntCombiner(
+                (y, z) -> {
+                    res.value1 = y;
+                    res.value2 = z;
+                    return y + z;
+                },
+                sum -> {
+                    println(sum);
+                    done.countDown();
+                });
+            CompletableFuture.runAsync(() -> Fn.fcbi(x, combiner::acceptLeft));
+            CompletableFuture.runAsync(() -> Fn.gcbi(x, combiner::acceptRight));
+            try { done.await(); } catch (InterruptedException e) { throw new RuntimeException(e); }
+        }
+        // AsyncCompose has the five styles for any f, g and combining function, AsyncComposeBenchmark measures their overhead.
         // You may argue that both alternatives make the code more complex. To some extent, this argument is correct; you shouldn’t thoughtlessly use either API for every method. But APIs keep code simpler (and use higher-level constructs) than explicit thread manipulation does. Also, careful use of these APIs for method calls that (a) cause long-running computations (perhaps longer than several milliseconds) or (b) wait for a network or for input from a human can significantly improve the efficiency of your application. In case (a), these techniques make your program faster without the explicit ubiquitous use of threads polluting your program. In case (b), there’s the additional benefit that the underlying system can use threads effectively without clogging up.
 
 
@@ -508,6 +529,64 @@ Other abstractions of threads: non-nested with method calls.
                 //C4:3
                 //C5:38
             }
+            // ArithmeticCell pushes every change right away, so a cell depending on a changed cell along two paths is recomputed twice, the first time from a half-updated set of inputs. CellEngine propagates a change level by level, recomputing every affected cell once, and several changes can be committed together.
+            public void testCellEngine() {
+                CellEngine sheet = new CellEngine();
+                int c1 = sheet.input(0);
+                int c2 = sheet.input(0);
+                int c4 = sheet.input(0);
+                int c3 = sheet.formula(CellEngine.SUM, c1, c2);
+                int c5 = sheet.formula(CellEngine.SUM, c3, c4);
+                sheet.onChange(c3, value -> println("C3:" + value));
+                sheet.onChange(c5, value -> println("C5:" + value));
+                sheet.transaction().set(c1, 10).set(c2, 20).commit();
+                sheet.set(c1, 15);
+                sheet.transaction().set(c4, 1).set(c4, 3).commit();
+                // Prints:
+                //C3:30.0
+                //C5:30.0
+                //C3:35.0
+                //C5:35.0
+                //C5:38.0
+                // A diamond: C8 depends on C1 through both C6 and C7 and is recomputed only once per change of C1.
+                int c6 = sheet.formula((values, inputs) -> values[inputs[0]] + 1, c1);
+                int c7 = sheet.formula((values, inputs) -> values[inputs[0]] * 2, c1);
+                int c8 = sheet.formula(CellEngine.SUM, c6, c7);
+                sheet.onChange(c8, value -> println("C8:" + value));
+                println("recomputed " + sheet.set(c1, 1) + " cells");
+                // Prints:
+                //C3:21.0
+                //C5:24.0
+                //C8:4.0
+                //recomputed 5 cells
+                testCellEngine(1_000_000);
+            }
+            // A sheet of rows of 100 inputs each summed by a row total, the row totals summed by 100 block totals, and the grand total of the blocks.
+            private void testCellEngine(int cells) {
+                CellEngine sheet = new CellEngine();
+                int rows = cells / 101;
+                int[] inputs = new int[rows * 100];
+                int[] rowTotals = new int[rows];
+                for (int row = 0; row < rows; row++) {
+                    int[] rowInputs = new int[100];
+                    for (int i = 0; i < 100; i++) { rowInputs[i] = inputs[row * 100 + i] = sheet.input(1); }
+                    rowTotals[row] = sheet.formula(CellEngine.SUM, rowInputs);
+                }
+                int[] blockTotals = new int[100];
+                for (int block = 0; block < 100; block++) {
+                    blockTotals[block] = sheet.formula(CellEngine.SUM, Arrays.copyOfRange(rowTotals, block * rows / 100, (block + 1) * rows / 100));
+                }
+                int total = sheet.formula(CellEngine.SUM, blockTotals);
+                sheet.set(inputs[0], 1); // Changes nothing, but builds the index of dependents.
+                long start = System.nanoTime();
+                int recomputed = sheet.set(inputs[0], 2);
+                println("one input of " + sheet.size() + " cells: recomputed " + recomputed + " cells in " + (System.nanoTime() - start) / 1_000 + " us, total " + sheet.get(total));
+                CellEngine.Transaction transaction = sheet.transaction();
+                for (int input : inputs) { transaction.set(input, 3); }
+                start = System.nanoTime();
+                recomputed = transaction.commit();
+                println("all " + inputs.length + " inputs in one transaction: recomputed " + recomputed + " cells in " + (System.nanoTime() - start) / 1_000_000 + " ms, total " + sheet.get(total));
+            }
 
         /*
         Because data flows from publisher (producer) to subscriber (consumer), developers often use words such as upstream and downstream. In the preceding code examples, the data newValue received by the upstream onNext() methods is passed via the call to notifyAllSubscribers() to the downstream onNext() call.
@@ -717,8 +796,15 @@ Other abstractions of threads: non-nested with method calls.
         public static class Shop {
             private final String name;
             private final Random random;
+            // null: the default distribution at the time of each call, so that Latency.setDefault() applies to existing shops too.
+            private final Latency.Distribution latency;
             public Shop(String name) {
+                this(name, null);
+            }
+            // A shop with its own simulated response time, e.g. Latency.logNormal(...) to get a realistic tail of slow responses.
+            public Shop(String name, Latency.Distribution latency) {
                 this.name = name;
+                this.latency = latency;
                 random = new Random(name.charAt(0) * name.charAt(1) * name.charAt(2));
             }
             public String getPrice(String product) {
@@ -731,7 +817,7 @@ Other abstractions of threads: non-nested with method calls.
                 return calculatePrice(product);
             }
             public double calculatePrice(String product) {
-                delay();
+                if (latency == null) { Latency.pause(); } else { Latency.pause(latency); }
                 return format(random.nextDouble() * product.charAt(0) + product.charAt(1));
             }
             public String getName() { return name; }
@@ -745,7 +831,7 @@ Other abstractions of threads: non-nested with method calls.
                 new Shop("BuyItAll"),
                 new Shop("ShopEasy"));
 
-            private final Executor executor = Executors.newFixedThreadPool(
+            private final ExecutorService executor = Executors.newFixedThreadPool(
                 Math.min(shops.size(), 100),
                 (Runnable r) -> {
                     Thread t = new Thread(r);
@@ -899,6 +985,41 @@ Other abstractions of threads: non-nested with method calls.
                 System.out.println("All shops have now responded in " + ((System.nanoTime() - start) / 1_000_000) + " msecs");
                 // The thenAccept method has an Async variant named thenAcceptAsync. The Async variant schedules the execution of the Consumer passed to it on a new thread from the thread pool instead of performing it directly, using the same thread that completed the CompletableFuture. Because you want to avoid an unnecessary context switch, and because (more important) you want to react to the completion of the CompletableFuture as soon as possible instead waiting for a new thread to be available, you don’t use this variant here.
             }
+
+            // Reacting to quotes with backpressure.
+            // printPricesStream pushes every quote at the caller as soon as it's ready, and all the shops are queried upfront. A Publisher lets the consumer pull quotes with request(n) instead: shops are queried only when there is demand for their quotes, at most maxInFlight at a time, and cancel() stops the calls still running.
+            public Publisher<Quote> pricesPublisher(String product, int maxInFlight) {
+                return new QuotePublisher(shops, product, executor, maxInFlight);
+            }
+            public void printPricesPublisher(String product) {
+                long start = System.nanoTime();
+                CountDownLatch done = new CountDownLatch(1);
+                pricesPublisher(product, 2).subscribe(new Subscriber<>() {
+                    private Subscription subscription;
+                    @Override
+                    public void onSubscribe(Subscription subscription) {
+                        this.subscription = subscription;
+                        // Ask for two quotes at first, then one more per quote received.
+                        subscription.request(2);
+                    }
+                    @Override
+                    public void onNext(Quote quote) {
+                        System.out.println(quote + " (done in " + ((System.nanoTime() - start) / 1_000_000) + " msecs)");
+                        subscription.request(1);
+                    }
+                    @Override
+                    public void onError(Throwable t) {
+                        System.err.println(t.getMessage());
+                        done.countDown();
+                    }
+                    @Override
+                    public void onComplete() {
+                        System.out.println("All shops have now responded in " + ((System.nanoTime() - start) / 1_000_000) + " msecs");
+                        done.countDown();
+                    }
+                });
+                try { done.await(); } catch (InterruptedException e) { throw new RuntimeException(e); }
+            }
         }
 
         public static void testBestPriceFinder() {
@@ -945,6 +1066,93 @@ Other abstractions of threads: non-nested with method calls.
             );
 
             bestPriceFinder.printPricesStream(product);
+            bestPriceFinder.printPricesPublisher(product);
+        }
+        // Hedged requests and deadlines.
+        // getFuturePriceInUSD can only give up on a slow shop. When latency has a long tail, the overall response time is driven by the few slowest calls, and sending a duplicate request for just those (the ones slower than the shop's usual 95th percentile) usually gets an answer much sooner. See HedgedPriceFinder.
+        public static void testHedgedPriceFinder() {
+            String product = "myPhone27S";
+            List<Shop> shops = Stream.of("BestPrice", "LetsSaveBig", "MyFavoriteShop", "BuyItAll", "ShopEasy")
+                .map(name -> new Shop(name, Latency.logNormal(Duration.ofMillis(100), 1.0)))
+                .collect(toList());
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            HedgedPriceFinder finder = new HedgedPriceFinder(shops, executor, 0.95, Duration.ofMillis(300), Duration.ofSeconds(3));
+            for (int i = 0; i < 10; i++) {
+                execute("hedged with deadline", () -> finder.findPrices(product));
+            }
+            shops.forEach(shop -> println(shop.getName() + ": " + finder.latencyOf(shop)));
+            println("Hedged requests sent: " + finder.hedgesSent());
+            executor.shutdown();
+        }
+        // Bulkheads and circuit breakers.
+        // One pool shared by all the shops lets a single hanging shop starve the others: each of its calls keeps a thread busy until orTimeout fires. ResilientPriceFinder bounds the concurrent calls of every shop and stops calling a shop whose recent calls mostly failed, so the healthy shops keep their throughput while 10% of the shops hang.
+        public static void testResilientPriceFinder() {
+            String product = "myPhone27S";
+            List<Shop> shops = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Latency.Distribution latency = i % 10 == 0
+                    ? Latency.fixed(Duration.ofSeconds(10))
+                    : Latency.logNormal(Duration.ofMillis(50), 0.5);
+                shops.add(new Shop("Shop" + i, latency));
+            }
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            ResilientPriceFinder finder = new ResilientPriceFinder(shops, executor, 4, Duration.ofMillis(500));
+            for (int i = 0; i < 10; i++) {
+                execute("with bulkheads and circuit breakers", () -> finder.findPrices(product));
+            }
+            finder.metrics().forEach(Util::println);
+            executor.shutdownNow();
+        }
+        // Caching prices.
+        // Every quote costs a remote call even when the same hot product was asked for a few milliseconds ago. ShopPriceCache serves recent prices, refreshes slightly old ones in the background and merges concurrent requests for the same missing price into one call.
+        public static void testShopPriceCache() {
+            ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+            ShopPriceCache cache = new ShopPriceCache(Duration.ofSeconds(2), Duration.ofSeconds(10), 1_000, executor);
+            List<Shop> shops = Stream.of("BestPrice", "LetsSaveBig", "MyFavoriteShop", "BuyItAll", "ShopEasy")
+                .map(name -> cache.cached(new Shop(name, Latency.logNormal(Duration.ofMillis(100), 0.5))))
+                .collect(toList());
+            Random random = new Random(0);
+            for (int round = 0; round < 5; round++) {
+                long start = System.nanoTime();
+                List<CompletableFuture<String>> prices = new ArrayList<>();
+                for (int i = 0; i < 1_000; i++) {
+                    // 80% of the requests are for the same hot product.
+                    String product = random.nextInt(10) < 8 ? "myPhone27S" : "product" + random.nextInt(100);
+                    Shop shop = shops.get(random.nextInt(shops.size()));
+                    prices.add(CompletableFuture.supplyAsync(() -> shop.getPrice(product), executor));
+                }
+                prices.forEach(CompletableFuture::join);
+                println("1000 quotes done in " + ((System.nanoTime() - start) / 1_000_000) + " msecs");
+            }
+            ShopPriceCache.Stats stats = cache.stats();
+            println(stats + " hit ratio " + format(stats.hitRatio()));
+            executor.shutdown();
+        }
+        // Request context.
+        // The id and principal of a request, bound once by RequestContext, are visible in every stage of the price pipeline, whether the stage runs on the executor of RequestContext or in a subtask forked by a StructuredTaskScope, without passing them from stage to stage.
+        public static void testRequestContext() throws Exception {
+            String product = "myPhone27S";
+            List<Shop> shops = Stream.of("BestPrice", "LetsSaveBig", "MyFavoriteShop")
+                .map(name -> new Shop(name, Latency.fixed(Duration.ofMillis(100))))
+                .collect(toList());
+            Executor executor = RequestContext.executor();
+            new RequestContext("request-1", "alice").call(() -> {
+                List<CompletableFuture<String>> prices = shops.stream()
+                    .map(shop -> CompletableFuture.supplyAsync(() -> shop.getPrice(product), executor)
+                        .thenApply(Quote::parse)
+                        .thenApplyAsync(Discount::applyDiscount, executor)
+                        .thenApply(price -> RequestContext.current().requestId() + " of " + RequestContext.current().principal() + ": " + price))
+                    .collect(toList());
+                prices.forEach(price -> println(price.join()));
+                try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+                    List<StructuredTaskScope.Subtask<String>> forked = shops.stream()
+                        .map(shop -> scope.fork(() -> RequestContext.current().requestId() + " forked: " + shop.getPrice(product)))
+                        .collect(toList());
+                    scope.join().throwIfFailed();
+                    forked.forEach(subtask -> println(subtask.get()));
+                }
+                return null;
+            });
         }
         private static void execute(String msg, Supplier<List<String>> s) {
             long start = System.nanoTime();
@@ -1020,7 +1228,6 @@ Other abstractions of threads: non-nested with method calls.
            - TempSubscriber, which listens to these reports and prints the stream of temperatures reported by a sensor installed in a given city.
         */
         public static class TempInfo {
-            public static final Random random = new Random();
             private final String town;
             private final int temp;
 
@@ -1031,6 +1238,8 @@ Other abstractions of threads: non-nested with method calls.
             // TempInfo instance for a given town is created via a static factory method.
             public static TempInfo fetch(String town) {
                 // Randomly fail one time out of ten.
+                // ThreadLocalRandom, so that many towns fetched concurrently don't contend on a shared Random.
+                ThreadLocalRandom random = ThreadLocalRandom.current();
                 if (random.nextInt(10) == 0) { throw new RuntimeException("Error!"); }
                 return new TempInfo(town, random.nextInt(100));
             }
@@ -1039,52 +1248,144 @@ Other abstractions of threads: non-nested with method calls.
             public int getTemp() { return temp; }
             public String getTown() { return town; }
         }
+        // Mutable counterpart of TempInfo: a source can reuse a pool of these and operators can convert them in place (see FlowOps.transform), so that a stream of temperatures doesn't allocate an object per temperature. Only safe while every stage is done with an event before the source reuses it.
+        public static class MutableTempInfo {
+            private String town;
+            private int temp;
+
+            public MutableTempInfo set(String town, int temp) {
+                this.town = town;
+                this.temp = temp;
+                return this;
+            }
+            public void toCelsius() { temp = (temp - 32) * 5 / 9; }
+            @Override
+            public String toString() { return town + " : " + temp; }
+            public int getTemp() { return temp; }
+            public String getTown() { return town; }
+        }
         // Subscription for the temperatures of a given town that sends a temperature report whenever this report is requested by its Subscriber.
         public static class TempSubscription implements Subscription {
-            private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+            // Shared by all the subscriptions, a virtual thread per drain task by default: a town waiting for its thermometer doesn't hold a platform thread, and one slow town doesn't delay the others as it did with a single thread for all of them.
+            private static volatile Executor defaultExecutor = Executors.newVirtualThreadPerTaskExecutor();
+            // Temperatures sent per task before yielding the thread to other towns, even if more were requested.
+            private static final int MAX_BATCH = 64;
             private final Subscriber<? super TempInfo> subscriber;
             private final String town;
+            private final Executor executor;
+            // Outstanding demand, only the request that raises it from 0 schedules a drain task.
+            private final AtomicLong requested = new AtomicLong();
+            private volatile boolean cancelled;
+            // Set by a request(n <= 0), for the drain task to report.
+            private volatile Throwable invalidRequest;
 
             public TempSubscription(Subscriber<? super TempInfo> subscriber, String town) {
+                this(subscriber, town, defaultExecutor);
+            }
+            public TempSubscription(Subscriber<? super TempInfo> subscriber, String town, Executor executor) {
                 this.subscriber = subscriber;
                 this.town = town;
+                this.executor = executor;
             }
+            public static void setDefaultExecutor(Executor executor) { defaultExecutor = executor; }
+
             // Request made by the Subscriber.
             @Override
             public void request(long n) {
                 // Every time the TempSubscriber receives a new element into its onNext method, it sends a new request to the TempSubscription, and then the request method sends another element to the TempSubscriber itself. These recursive invocations are pushed onto the stack one after the other until the stack overflows, generating StackOverflowError. One possible solution is to add an Executor to the TempSubscription and then use it to send new elements to the TempSubscriber from a different thread.
-                executor.submit(() -> {
-                    for (long i = 0L; i < n; i++) {
+                // Here, the demand is only added to the counter, and a drain task is scheduled only when the counter was 0. A request coming while a task is running (e.g. from onNext) is served by that same task.
+                if (cancelled) { return; }
+                if (n <= 0) {
+                    // Reported by the drain task, so that onError never runs concurrently with onNext; the unit of demand added below makes sure a task runs.
+                    invalidRequest = new IllegalArgumentException("non-positive request: " + n);
+                    n = 1;
+                }
+                long previous = requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+                if (previous == 0) { executor.execute(this::drain); }
+            }
+            private void drain() {
+                // Sent by this task, never reset: once MAX_BATCH, the task yields even if the subscriber keeps requesting a few at a time.
+                int sent = 0;
+                long demand = requested.get();
+                while (true) {
+                    long emitted = 0;
+                    while (emitted < demand) {
+                        if (cancelled) { return; }
+                        Throwable error = invalidRequest;
+                        if (error != null) {
+                            cancelled = true;
+                            subscriber.onError(error);
+                            return;
+                        }
+                        if (sent == MAX_BATCH) { break; }
                         // Sends the current temperature to the Subscriber.
                         try { subscriber.onNext(TempInfo.fetch(town)); }
-                        catch (Exception e) { subscriber.onError(e); break; }
+                        catch (Exception e) {
+                            cancelled = true;
+                            subscriber.onError(e);
+                            return;
+                        }
+                        emitted++;
+                        sent++;
                     }
-                });
+                    demand = requested.addAndGet(-emitted);
+                    if (demand == 0 || cancelled) { return; }
+                    if (sent == MAX_BATCH) {
+                        // Still some demand: continue in a new task, behind the towns already waiting.
+                        executor.execute(this::drain);
+                        return;
+                    }
+                }
             }
+            // Stops sending immediately: no further onNext, and no onComplete either since the Subscriber asked for it.
             @Override
-            public void cancel() { subscriber.onComplete(); }
+            public void cancel() { cancelled = true; }
         }
-        // Subscriber that, every time it gets a new element, prints the temperatures received from the Subscription and asks for a new report.
+        // Subscriber that, every time it gets a new element, prints the temperatures received from the Subscription.
+        // Instead of asking for one report at a time it asks for prefetch reports upfront and for more once three quarters of them have arrived, so most of the time the subscription has some demand and doesn't need to wait for a request.
         public static class TempSubscriber implements Subscriber<TempInfo> {
+            private final int prefetch;
+            private final int replenishAt;
+            private final CountDownLatch done = new CountDownLatch(1);
             private Subscription subscription;
+            private int received;
+
+            public TempSubscriber() { this(8); }
+            public TempSubscriber(int prefetch) {
+                this.prefetch = prefetch;
+                this.replenishAt = Math.max(1, prefetch - prefetch / 4);
+            }
 
             @Override
             public void onSubscribe(Subscription subscription) {
                 this.subscription = subscription;
-                subscription.request(1);
+                subscription.request(prefetch);
             }
             @Override
             public void onNext(TempInfo tempInfo) {
-                System.out.println(tempInfo);
-                subscription.request(1);
+                handle(tempInfo);
+                if (++received == replenishAt) {
+                    received = 0;
+                    subscription.request(replenishAt);
+                }
             }
+            protected void handle(TempInfo tempInfo) { System.out.println(tempInfo); }
             @Override
-            public void onError(Throwable t) { System.err.println(t.getMessage()); }
+            public void onError(Throwable t) {
+                System.err.println(t.getMessage());
+                done.countDown();
+            }
 
             @Override
-            public void onComplete() { System.out.println("Done!"); }
+            public void onComplete() {
+                System.out.println("Done!");
+                done.countDown();
+            }
+            // Threads delivering the temperatures are daemon ones, so wait here before main() returns.
+            public void await() {
+                try { done.await(); } catch (InterruptedException e) { throw new RuntimeException(e); }
+            }
         }
-        // The app.
         public class TempMonitorV1 {
             public static void testTempMonitorV1() {
                 //{
@@ -1108,10 +1409,12 @@ Other abstractions of threads: non-nested with method calls.
                 //    new TempSubscriber()
                 //);
                 // or
-                getTemperatures("New York").subscribe(new TempSubscriber());
+                TempSubscriber subscriber = new TempSubscriber();
+                getTemperatures("New York").subscribe(subscriber);
+                subscriber.await();
             }
             // Returns a lambda expression that takes a Subscriber as an argument and invokes its onSubscribe method, passing to it a new TempSubscription instance. Because the signature of this lambda is identical to the only abstract method of the Publisher functional interface [public void subscribe(Subscriber<? super T> subscriber)], the Java compiler can automatically convert the lambda to a Publisher. The main method creates a Publisher for the temperatures in New York and then subscribes a new instance of the TempSubscriber class to it.
-            private static Publisher<TempInfo> getTemperatures(String town) {
+            static Publisher<TempInfo> getTemperatures(String town) {
                 return subscriber -> subscriber.onSubscribe(new TempSubscription(subscriber, town));
             }
             //private static void runMonitor(
@@ -1150,7 +1453,9 @@ Other abstractions of threads: non-nested with method calls.
         }
         public class TempMonitorV2 {
             public static void testTempMonitorV2() {
-                getCelsiusTemperatures("New York").subscribe(new TempSubscriber());
+                TempSubscriber subscriber = new TempSubscriber();
+                getCelsiusTemperatures("New York").subscribe(subscriber);
+                subscriber.await();
             }
             public static Publisher<TempInfo> getCelsiusTemperatures(String town) {
                 return subscriber -> {
@@ -1160,6 +1465,44 @@ Other abstractions of threads: non-nested with method calls.
                 };
             }
         }
+        // Fused operators. With FlowOps the conversion, filtering and sampling run inside one Subscriber instead of a Processor per stage, and the buffer absorbs bursts for a slow consumer keeping only the latest temperatures.
+        public class TempMonitorV4 {
+            public static void testFusedOperators() {
+                TempSubscriber subscriber = new TempSubscriber();
+                FlowOps.from(TempMonitorV1.getTemperatures("New York"))
+                    .map(temp -> new TempInfo(temp.getTown(), (temp.getTemp() - 32) * 5 / 9))
+                    .filter(temp -> temp.getTemp() < 30)
+                    .sample(2)
+                    .buffer(16, FlowOps.Overflow.LATEST)
+                    .subscribe(subscriber);
+                subscriber.await();
+            }
+        }
+        // Many feeds at once. Every town has its own subscription and demand counter, and all of them share the virtual-thread executor, so 100 000 towns cost 100 000 small objects rather than 100 000 threads.
+        public class TempMonitorV3 {
+            public static void testManyTowns(int towns) {
+                LongAdder received = new LongAdder();
+                CountDownLatch terminated = new CountDownLatch(towns);
+                long start = System.nanoTime();
+                for (int i = 0; i < towns; i++) {
+                    // A feed ends at the first failed fetch, i.e. after about ten temperatures.
+                    getTemperatures("Town" + i).subscribe(new TempSubscriber(16) {
+                        @Override
+                        protected void handle(TempInfo tempInfo) { received.increment(); }
+                        @Override
+                        public void onError(Throwable t) { terminated.countDown(); }
+                        @Override
+                        public void onComplete() { terminated.countDown(); }
+                    });
+                }
+                try { terminated.await(); } catch (InterruptedException e) { throw new RuntimeException(e); }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                println(towns + " feeds delivered " + received.sum() + " temperatures in " + millis + " msecs");
+            }
+            private static Publisher<TempInfo> getTemperatures(String town) {
+                return subscriber -> subscriber.onSubscribe(new TempSubscription(subscriber, town));
+            }
+        }
 
         // Why doesn’t Java provide an implementation of the Flow API? And why it's so weird looking piece of Java. The answer is historic: there were multiple Java code libraries of reactive streams (such as Akka and RxJava). Originally, these libraries were developed separately, and although they implemented reactive programming via publish-subscribe ideas, they used different nomenclature and APIs. During the standardization process of Java 9, these libraries evolved so that their classes formally implemented the interfaces in java.util.concurrent.Flow, as opposed to merely implementing the reactive concepts. This standard enables more collaboration among different libraries.
 
@@ -1328,6 +1671,19 @@ Other abstractions of threads: non-nested with method calls.
                     } finally { lock.unlock(); }
                 }
             }
+            // What pinning costs: 10,000 tasks each blocking for 10 ms inside a critical section of its own. With synchronized only as many tasks as there are carrier threads run at once, with the lock all of them do.
+            static void measure() {
+                println(LoomScalability.pinnedBySynchronized(10_000, Duration.ofMillis(10)));
+                println(LoomScalability.unpinnedByLock(10_000, Duration.ofMillis(10)));
+            }
+        }
+        // Thread-per-task with tasks blocking for 10 ms: virtual threads against the fixed pool of 200 platform threads mentioned in JavaEvolutionMain.Concurrency.vThreads. The pool isn't run with 10^6 tasks, that would take 50 s.
+        static void scalability() {
+            for (int tasks = 1_000; tasks <= 1_000_000; tasks *= 10) {
+                println(LoomScalability.virtualThreadPerTask(tasks, Duration.ofMillis(10)));
+                if (tasks < 1_000_000) { println(LoomScalability.platformPool(200, tasks, Duration.ofMillis(10))); }
+            }
+            SynchronizedVsLock.measure();
         }
         /* Use Scoped values instead of ThreadLocal.
         https://openjdk.org/jeps/446
@@ -0,0 +1,124 @@
+package org.example.java_learning;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntFunction;
+
+/**
+ * Measurements behind the claims of VirtualThreadsAndStructuredConcurrencyAkaProjectLoom, for deciding which code is worth moving to virtual threads.
+ *  - virtualThreadPerTask, platformPool: tasks that block for a while, submitted all at once to a virtual-thread-per-task executor or to a pool of platform threads.
+ *  - pinnedBySynchronized, unpinnedByLock: the same on virtual threads with every task blocking inside a critical section guarded by synchronized or by a ReentrantLock. Before JDK 24 (JEP 491) a virtual thread blocking while holding a monitor pins its carrier thread, so at most as many such tasks as there are carriers make progress at once.
+ * Every run reports the throughput, percentiles of the time from submitting a task to its completion (so waiting for a free thread counts), and how busy the threads running the tasks were: the CPU time of the carrier threads (or of the pool's threads) divided by the wall time of the run times the number of such threads. A low utilization with a low throughput means threads sit blocked instead of running other tasks.
+ * ThreadLocal against ScopedValue, a cost of nanoseconds, is measured with JMH by VirtualThreadBenchmark in streams_benchmarks.
+ */
+public class LoomScalability {
+    public static final int CARRIERS = Integer.getInteger("jdk.virtualThreadScheduler.parallelism", Runtime.getRuntime().availableProcessors());
+    private static final String POOL_THREAD_PREFIX = "loom-scalability-pool-";
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    public record Result(String scenario, int tasks, Duration wall, LatencyHistogram latency, double utilization) {
+        public double throughput() { return tasks / (wall.toNanos() / 1e9); }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s %,9d tasks %,8d ms %,12.0f tasks/s  p50=%.1fms p99=%.1fms max=%.1fms  utilization=%.1f%%",
+                scenario, tasks, wall.toMillis(), throughput(),
+                latency.percentile(0.5) / 1e6, latency.percentile(0.99) / 1e6, latency.max() / 1e6, utilization * 100);
+        }
+    }
+
+    public static Result virtualThreadPerTask(int tasks, Duration blocking) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return run("virtual", executor, carrierPrefix(), CARRIERS, tasks, i -> () -> sleep(blocking));
+        }
+    }
+
+    public static Result platformPool(int threads, int tasks, Duration blocking) {
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name(POOL_THREAD_PREFIX, 0).factory())) {
+            return run("platform pool of " + threads, executor, POOL_THREAD_PREFIX, threads, tasks, i -> () -> sleep(blocking));
+        }
+    }
+
+    // Every task has a monitor of its own, so nothing is contended: the only difference is whether blocking while holding it pins the carrier.
+    public static Result pinnedBySynchronized(int tasks, Duration blocking) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return run("virtual, synchronized", executor, carrierPrefix(), CARRIERS, tasks, i -> {
+                Object monitor = new Object();
+                return () -> {
+                    synchronized (monitor) { sleep(blocking); }
+                };
+            });
+        }
+    }
+
+    public static Result unpinnedByLock(int tasks, Duration blocking) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            return run("virtual, ReentrantLock", executor, carrierPrefix(), CARRIERS, tasks, i -> {
+                ReentrantLock lock = new ReentrantLock();
+                return () -> {
+                    lock.lock();
+                    try { sleep(blocking); }
+                    finally { lock.unlock(); }
+                };
+            });
+        }
+    }
+
+    private static Result run(String scenario, ExecutorService executor, String threadPrefix, int threads, int tasks, IntFunction<Runnable> taskFactory) {
+        LatencyHistogram latency = new LatencyHistogram();
+        Runnable[] bodies = new Runnable[tasks];
+        for (int i = 0; i < tasks; i++) { bodies[i] = taskFactory.apply(i); }
+        // Threads started during the run have no CPU time before it, so the baseline only matters for those already running.
+        long cpuBefore = cpuTimeOfThreads(threadPrefix);
+        long start = System.nanoTime();
+        CountDownLatch done = new CountDownLatch(tasks);
+        for (Runnable body : bodies) {
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                body.run();
+                latency.record(System.nanoTime() - submitted);
+                done.countDown();
+            });
+        }
+        // Measured before closing the executor, while the pool's threads are still alive.
+        try { done.await(); }
+        catch (InterruptedException e) { throw new RuntimeException(e); }
+        long wall = System.nanoTime() - start;
+        double utilization = (double) (cpuTimeOfThreads(threadPrefix) - cpuBefore) / ((double) wall * threads);
+        return new Result(scenario, tasks, Duration.ofNanos(wall), latency, utilization);
+    }
+
+    // A virtual thread prints as VirtualThread[#21]/runnable@ForkJoinPool-1-worker-1, the part after @ being its carrier.
+    private static String carrierPrefix() {
+        try {
+            String[] name = new String[1];
+            Thread.ofVirtual().start(() -> name[0] = Thread.currentThread().toString()).join();
+            String carrier = name[0].substring(name[0].lastIndexOf('@') + 1);
+            return carrier.substring(0, carrier.lastIndexOf('-') + 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long cpuTimeOfThreads(String namePrefix) {
+        long total = 0;
+        for (ThreadInfo info : THREADS.getThreadInfo(THREADS.getAllThreadIds())) {
+            if (info != null && info.getThreadName().startsWith(namePrefix)) {
+                total += Math.max(0, THREADS.getThreadCpuTime(info.getThreadId()));
+            }
+        }
+        return total;
+    }
+
+    private static void sleep(Duration duration) {
+        try { Thread.sleep(duration); }
+        catch (InterruptedException e) { throw new RuntimeException(e); }
+    }
+}
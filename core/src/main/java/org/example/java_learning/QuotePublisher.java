@@ -0,0 +1,162 @@
+package org.example.java_learning;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.example.java_learning.JavaConcurrencyEnhancedMain.CompletableFutureInDetails.Shop;
+
+/**
+ * Backpressured feed of discounted quotes for a product, the pull-model counterpart of BestPriceFinder.printPricesStream.
+ * A shop is asked for its price only when the subscriber has requested a quote that isn't covered by calls already in flight, and never more than maxInFlight shops are queried at once.
+ * Quotes are emitted in completion order, so the fastest shops are seen first. Cancelling the subscription interrupts the shop calls still running.
+ */
+public class QuotePublisher implements Publisher<Quote> {
+    private final List<Shop> shops;
+    private final String product;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    public QuotePublisher(List<Shop> shops, String product, ExecutorService executor, int maxInFlight) {
+        if (maxInFlight <= 0) { throw new IllegalArgumentException("maxInFlight <= 0: " + maxInFlight); }
+        this.shops = List.copyOf(shops);
+        this.product = product;
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super Quote> subscriber) {
+        Objects.requireNonNull(subscriber);
+        QuoteSubscription subscription = new QuoteSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.drain();
+    }
+
+    private class QuoteSubscription implements Subscription {
+        private final Subscriber<? super Quote> subscriber;
+        private final Queue<Quote> ready = new ConcurrentLinkedQueue<>();
+        private final Set<Future<?>> outstanding = ConcurrentHashMap.newKeySet();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        // Work-in-progress counter: only the thread that moves it from 0 runs the drain loop, the others just ask it for one more pass.
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        // Accessed only inside the drain loop.
+        private long emitted;
+        private int nextShop;
+        private boolean done;
+
+        QuoteSubscription(Subscriber<? super Quote> subscriber) { this.subscriber = subscriber; }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // Rule 3.9 of the Reactive Streams specification.
+                error = new IllegalArgumentException("non-positive request: " + n);
+            } else {
+                requested.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stopOutstanding();
+        }
+
+        private void stopOutstanding() {
+            outstanding.forEach(future -> future.cancel(true));
+            outstanding.clear();
+        }
+
+        private void query(Shop shop) {
+            inFlight.incrementAndGet();
+            FutureTask<Void> call = new FutureTask<>(() -> fetch(shop), null) {
+                @Override
+                protected void done() { outstanding.remove(this); }
+            };
+            outstanding.add(call);
+            // cancel() may have run before the call was registered.
+            if (cancelled) { call.cancel(true); }
+            try {
+                executor.execute(call);
+            } catch (RejectedExecutionException e) {
+                // Like a failed fetch: this call won't run, and the next pass of the drain loop (we are in it) signals the error.
+                outstanding.remove(call);
+                if (!cancelled && error == null) { error = e; }
+                inFlight.decrementAndGet();
+                drain();
+            }
+        }
+
+        private void fetch(Shop shop) {
+            try {
+                Quote quote = Quote.parse(shop.getPrice(product));
+                ready.offer(Discount.discountedQuote(quote));
+            } catch (Throwable t) {
+                if (!cancelled && error == null) { error = t; }
+            } finally {
+                // Decrement only after the quote is queued, so drain() never misses both the call and its quote.
+                inFlight.decrementAndGet();
+                drain();
+            }
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) { return; }
+            int missed = 1;
+            do {
+                if (done) { return; }
+                if (cancelled) {
+                    done = true;
+                    ready.clear();
+                    return;
+                }
+                long r = requested.get();
+                long e = emitted;
+                while (e != r && !cancelled) {
+                    Quote quote = ready.poll();
+                    if (quote == null) { break; }
+                    subscriber.onNext(quote);
+                    e++;
+                }
+                emitted = e;
+                Throwable t = error;
+                if (t != null && !cancelled) {
+                    done = true;
+                    stopOutstanding();
+                    subscriber.onError(t);
+                    return;
+                }
+                while (!cancelled
+                    && error == null
+                    && nextShop < shops.size()
+                    && inFlight.get() < maxInFlight
+                    && e + ready.size() + inFlight.get() < r) {
+                    query(shops.get(nextShop++));
+                }
+                if (!cancelled && error == null && nextShop == shops.size() && inFlight.get() == 0 && ready.isEmpty()) {
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
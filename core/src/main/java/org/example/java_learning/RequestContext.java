@@ -0,0 +1,82 @@
+package org.example.java_learning;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Context of the request being handled (its id, the principal making it and some free-form attributes), visible to all the code handling the request without being passed as an argument.
+ * It is a ScopedValue, as in the Server/DBAccess example of VirtualThreadsAndStructuredConcurrencyAkaProjectLoom:
+ *  - bound once with run or call, for the duration of that call only, and immutable (with returns a copy, to be bound for a nested call);
+ *  - inherited by the subtasks forked by a StructuredTaskScope opened inside that call, without any copying;
+ *  - carried over to tasks run by an Executor, e.g. CompletableFuture stages, by the executor returned from propagating, which captures the context when a task is submitted and binds it again around the task, instead of every stage copying it by hand.
+ * Nothing here relies on inheritable thread-locals: executor() creates virtual threads which don't inherit them, so a child thread starts without a copy of its parent's map.
+ */
+public record RequestContext(String requestId, String principal, Map<String, String> attributes) {
+    private static final ScopedValue<RequestContext> CURRENT = ScopedValue.newInstance();
+    private static final ExecutorService VIRTUAL_THREADS =
+        Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("request-", 0).inheritInheritableThreadLocals(false).factory());
+
+    public RequestContext {
+        attributes = Map.copyOf(attributes);
+    }
+
+    public RequestContext(String requestId, String principal) { this(requestId, principal, Map.of()); }
+
+    public RequestContext with(String attribute, String value) {
+        Map<String, String> copy = new HashMap<>(attributes);
+        copy.put(attribute, value);
+        return new RequestContext(requestId, principal, copy);
+    }
+
+    public Optional<String> attribute(String name) { return Optional.ofNullable(attributes.get(name)); }
+
+    // Runs task with this context bound.
+    public void run(Runnable task) { ScopedValue.where(CURRENT, this).run(task); }
+
+    public <T> T call(Callable<? extends T> task) throws Exception { return ScopedValue.where(CURRENT, this).call(task); }
+
+    public static RequestContext current() {
+        if (!CURRENT.isBound()) { throw new NoSuchElementException("No request context bound to " + Thread.currentThread()); }
+        return CURRENT.get();
+    }
+
+    public static Optional<RequestContext> find() { return CURRENT.isBound() ? Optional.of(CURRENT.get()) : Optional.empty(); }
+
+    // task bound to the context of the calling thread, if any.
+    public static Runnable wrap(Runnable task) {
+        if (!CURRENT.isBound()) { return task; }
+        RequestContext context = CURRENT.get();
+        return () -> context.run(task);
+    }
+
+    public static <T> Supplier<T> wrap(Supplier<T> supplier) {
+        if (!CURRENT.isBound()) { return supplier; }
+        RequestContext context = CURRENT.get();
+        return () -> {
+            try {
+                return context.call(supplier::get);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                // Can't happen, Supplier doesn't throw checked exceptions.
+                throw new CompletionException(e);
+            }
+        };
+    }
+
+    // Runs every task with the context of the thread that submitted it.
+    public static Executor propagating(Executor executor) {
+        return task -> executor.execute(wrap(task));
+    }
+
+    // A virtual thread per task, not inheriting thread-locals, propagating the context.
+    public static Executor executor() { return propagating(VIRTUAL_THREADS); }
+}
@@ -0,0 +1,123 @@
+package org.example.java_learning;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.example.java_learning.JavaConcurrencyEnhancedMain.CompletableFutureInDetails.Shop;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * BestPriceFinder isolating shops from each other.
+ * With one shared pool, a shop that hangs keeps the pool threads busy until orTimeout fires, and the healthy shops queue behind it. Here every shop has:
+ *  - a bulkhead, a limit on its concurrent calls: a hanging shop can hold at most maxConcurrentCalls threads, further calls to it are rejected at once;
+ *  - a circuit breaker, which stops calling a shop at all while too many of its recent calls failed or were slow.
+ * Calls run on the given executor, best a virtual-thread-per-task one so that no pool size has to be shared between shops at all.
+ */
+public class ResilientPriceFinder {
+    private final Map<String, Guard> guards = new LinkedHashMap<>();
+    private final List<Shop> shops;
+    private final Executor executor;
+    private final Duration callTimeout;
+
+    // Bulkhead and breaker of a single shop, with its counters.
+    private static class Guard {
+        final int maxConcurrentCalls;
+        final Semaphore bulkhead;
+        final CircuitBreaker breaker;
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong rejectedByBulkhead = new AtomicLong();
+
+        Guard(int maxConcurrentCalls, CircuitBreaker breaker) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.bulkhead = new Semaphore(maxConcurrentCalls);
+            this.breaker = breaker;
+        }
+    }
+
+    public record ShopMetrics(String shop, CircuitBreaker.State state, long calls, long failures,
+                              long rejectedByBreaker, long rejectedByBulkhead, long timesOpened, int callsInProgress) {}
+
+    public ResilientPriceFinder(List<Shop> shops, Executor executor, int maxConcurrentCallsPerShop, Duration callTimeout, Supplier<CircuitBreaker> breakers) {
+        this.shops = List.copyOf(shops);
+        this.executor = executor;
+        this.callTimeout = callTimeout;
+        this.shops.forEach(shop -> guards.put(shop.getName(), new Guard(maxConcurrentCallsPerShop, breakers.get())));
+    }
+
+    // Defaults: a shop is cut off when half of its last 20 calls failed or 80% were slower than half of the timeout, and retried after 5 seconds.
+    public ResilientPriceFinder(List<Shop> shops, Executor executor, int maxConcurrentCallsPerShop, Duration callTimeout) {
+        this(shops, executor, maxConcurrentCallsPerShop, callTimeout,
+            () -> new CircuitBreaker(20, 0.5, callTimeout.dividedBy(2), 0.8, Duration.ofSeconds(5), 3));
+    }
+
+    public List<String> findPrices(String product) {
+        List<CompletableFuture<String>> priceFutures = shops.stream()
+            .map(shop -> getPrice(shop, product)
+                .thenApply(Quote::parse)
+                .thenApply(Discount::applyDiscount)
+                .exceptionally(t -> shop.getName() + " price is unavailable: " + describe(t)))
+            .collect(toList());
+        return priceFutures.stream().map(CompletableFuture::join).collect(toList());
+    }
+
+    // Fails fast with a RejectedExecutionException when the shop's breaker is open or its bulkhead is full.
+    public CompletableFuture<String> getPrice(Shop shop, String product) {
+        Guard guard = guards.get(shop.getName());
+        if (!guard.bulkhead.tryAcquire()) {
+            guard.rejectedByBulkhead.incrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Bulkhead of " + shop.getName() + " is full"));
+        }
+        if (!guard.breaker.tryAcquirePermission()) {
+            guard.bulkhead.release();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Circuit breaker of " + shop.getName() + " is open"));
+        }
+        guard.calls.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<String> call;
+        try {
+            call = CompletableFuture.supplyAsync(() -> {
+                // The permit is released when the call really ends, not when the caller stops waiting for it, so a hanging shop stays bounded.
+                try { return shop.getPrice(product); }
+                finally { guard.bulkhead.release(); }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            guard.bulkhead.release();
+            guard.breaker.onResult(System.nanoTime() - start, false);
+            return CompletableFuture.failedFuture(e);
+        }
+        return call
+            .orTimeout(callTimeout.toNanos(), TimeUnit.NANOSECONDS)
+            .whenComplete((price, t) -> {
+                if (t != null) { guard.failures.incrementAndGet(); }
+                guard.breaker.onResult(System.nanoTime() - start, t == null);
+            });
+    }
+
+    public List<ShopMetrics> metrics() {
+        return guards.entrySet().stream()
+            .map(e -> {
+                Guard g = e.getValue();
+                return new ShopMetrics(e.getKey(), g.breaker.getState(), g.calls.get(), g.failures.get(),
+                    g.breaker.getRejected(), g.rejectedByBulkhead.get(), g.breaker.getTimesOpened(),
+                    g.maxConcurrentCalls - g.bulkhead.availablePermits());
+            })
+            .collect(toList());
+    }
+
+    private static String describe(Throwable t) {
+        Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+        return cause.getClass().getSimpleName();
+    }
+}
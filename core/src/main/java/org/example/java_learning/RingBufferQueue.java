@@ -0,0 +1,219 @@
+package org.example.java_learning;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi-producer multi-consumer queue, the lock-free replacement of the WaitingQueue of JavaConcurrencyAndMemoryMain.
+ * WaitingQueue holds one monitor for every push and pop, allocates a LinkedList node per element, wakes every waiting thread on every push, and its pop() swallows interrupts so a waiting consumer can't be stopped.
+ * Here elements live in an array used as a ring, and every slot has a sequence number telling whether it is free for the producer of a given round or holds the element for the consumer of that round.
+ *  - A producer claims the slot at tail with a CAS on tail, writes the element and publishes it by advancing the slot's sequence; a consumer does the same at head. Producers and consumers only contend among themselves, and never hold a lock while another thread waits for them.
+ *  - head and tail are padded to lie on different cache lines, so producers moving tail don't keep invalidating the line consumers read head from (false sharing).
+ *  - offerAll and drainTo claim a whole run of slots with a single CAS.
+ *  - put and take wait with a pluggable WaitStrategy, one for producers waiting for space and one for consumers waiting for elements, and throw InterruptedException when interrupted.
+ */
+public class RingBufferQueue<E> {
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Object[] elements;
+    private final long[] sequences;
+    private final int mask;
+    private final PaddedSequence head = new PaddedSequence();
+    private final PaddedSequence tail = new PaddedSequence();
+    private final WaitStrategy notFull;
+    private final WaitStrategy notEmpty;
+
+    // capacity is rounded up to a power of 2.
+    public RingBufferQueue(int capacity, Supplier<? extends WaitStrategy> waitStrategy) {
+        if (capacity <= 0 || capacity > 1 << 30) { throw new IllegalArgumentException("capacity out of range: " + capacity); }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        elements = new Object[size];
+        sequences = new long[size];
+        mask = size - 1;
+        // Slot i is free for the producer of position i.
+        for (int i = 0; i < size; i++) { sequences[i] = i; }
+        notFull = waitStrategy.get();
+        notEmpty = waitStrategy.get();
+    }
+
+    public RingBufferQueue(int capacity) { this(capacity, WaitStrategy::blocking); }
+
+    public boolean offer(E element) {
+        Objects.requireNonNull(element);
+        long position = tail.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long difference = (long) SEQUENCE.getAcquire(sequences, index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    SEQUENCE.setRelease(sequences, index, position + 1);
+                    notEmpty.signal();
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds the element of the previous round: full.
+                return false;
+            } else {
+                // Another producer claimed this position.
+                position = tail.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.get();
+        for (;;) {
+            int index = (int) position & mask;
+            long difference = (long) SEQUENCE.getAcquire(sequences, index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = (E) elements[index];
+                    elements[index] = null;
+                    // Free for the producer of the next round.
+                    SEQUENCE.setRelease(sequences, index, position + elements.length);
+                    notFull.signal();
+                    return element;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    public void put(E element) throws InterruptedException {
+        Objects.requireNonNull(element);
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        while (!offer(element)) {
+            notFull.await(this::hasSpace);
+        }
+    }
+
+    public E take() throws InterruptedException {
+        if (Thread.interrupted()) { throw new InterruptedException(); }
+        E element;
+        while ((element = poll()) == null) {
+            notEmpty.await(this::hasElement);
+        }
+        return element;
+    }
+
+    // Adds as many of the elements as there is space for, in order, and returns how many were added.
+    public int offerAll(List<? extends E> batch) {
+        for (E element : batch) { Objects.requireNonNull(element); }
+        long position = tail.get();
+        for (;;) {
+            int free = 0;
+            while (free < batch.size()
+                && (long) SEQUENCE.getAcquire(sequences, (int) (position + free) & mask) == position + free) {
+                free++;
+            }
+            if (free == 0) {
+                long current = tail.get();
+                if (current == position) { return 0; }
+                position = current;
+                continue;
+            }
+            if (tail.compareAndSet(position, position + free)) {
+                for (int i = 0; i < free; i++) {
+                    int index = (int) (position + i) & mask;
+                    elements[index] = batch.get(i);
+                    SEQUENCE.setRelease(sequences, index, position + i + 1);
+                }
+                for (int i = 0; i < free; i++) { notEmpty.signal(); }
+                return free;
+            }
+            position = tail.get();
+        }
+    }
+
+    // Moves up to max elements into target, in order, and returns how many were moved.
+    @SuppressWarnings("unchecked")
+    public int drainTo(Collection<? super E> target, int max) {
+        long position = head.get();
+        for (;;) {
+            int available = 0;
+            while (available < max
+                && (long) SEQUENCE.getAcquire(sequences, (int) (position + available) & mask) == position + available + 1) {
+                available++;
+            }
+            if (available == 0) {
+                long current = head.get();
+                if (current == position) { return 0; }
+                position = current;
+                continue;
+            }
+            if (head.compareAndSet(position, position + available)) {
+                for (int i = 0; i < available; i++) {
+                    int index = (int) (position + i) & mask;
+                    target.add((E) elements[index]);
+                    elements[index] = null;
+                    SEQUENCE.setRelease(sequences, index, position + i + elements.length);
+                }
+                for (int i = 0; i < available; i++) { notFull.signal(); }
+                return available;
+            }
+            position = head.get();
+        }
+    }
+
+    public int drainTo(Collection<? super E> target) { return drainTo(target, Integer.MAX_VALUE); }
+
+    // Read with full volatile semantics, as WaitStrategy.Blocking relies on.
+    private boolean hasElement() {
+        long position = head.get();
+        return (long) SEQUENCE.getVolatile(sequences, (int) position & mask) == position + 1;
+    }
+
+    private boolean hasSpace() {
+        long position = tail.get();
+        return (long) SEQUENCE.getVolatile(sequences, (int) position & mask) == position;
+    }
+
+    // Approximate while producers or consumers are active.
+    public int size() {
+        for (;;) {
+            long consumed = head.get();
+            long produced = tail.get();
+            if (head.get() == consumed) { return (int) Math.max(0, Math.min(produced - consumed, elements.length)); }
+        }
+    }
+
+    public boolean isEmpty() { return !hasElement(); }
+
+    public int capacity() { return elements.length; }
+
+    // A volatile long with 7 longs on each side, so that it has a cache line to itself. Fields of a superclass are laid out before those of its subclass, unlike fields of one class which the JVM may reorder.
+    private static class LeftPadding {
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+
+    private static class Value extends LeftPadding {
+        protected volatile long value;
+    }
+
+    private static final class PaddedSequence extends Value {
+        private static final VarHandle VALUE;
+        static {
+            try {
+                VALUE = MethodHandles.lookup().findVarHandle(Value.class, "value", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+        long p9, p10, p11, p12, p13, p14, p15;
+
+        long get() { return value; }
+
+        boolean compareAndSet(long expected, long newValue) { return VALUE.compareAndSet(this, expected, newValue); }
+    }
+}
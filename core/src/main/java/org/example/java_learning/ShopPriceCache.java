@@ -0,0 +1,143 @@
+package org.example.java_learning;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.example.java_learning.JavaConcurrencyEnhancedMain.CompletableFutureInDetails.Shop;
+
+/**
+ * Cache of shop prices keyed by shop and product, shared by all the shops it decorates (see cached(Shop)).
+ *  - A price younger than ttl is served from the cache.
+ *  - A price older than ttl but younger than ttl + staleWhileRevalidate is still served, while a single background call refreshes it, so hot products never wait for a shop.
+ *  - Otherwise the caller waits for the shop, and concurrent callers asking for the same price wait for the same call instead of issuing their own.
+ * At most maxSize prices are kept, the least recently used one is evicted first.
+ */
+public class ShopPriceCache {
+    private final long ttlNanos;
+    private final long staleNanos;
+    private final Executor refreshExecutor;
+    // Access-ordered, so iteration starts from the least recently used entry. Guarded by itself.
+    private final LinkedHashMap<Key, Entry> entries;
+    private final Map<Key, CompletableFuture<String>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder savedNanos = new LongAdder();
+
+    private record Key(String shop, String product) {}
+    // loadNanos is how long the shop took to answer, i.e. the time saved by every hit on this entry.
+    private record Entry(String price, long loadedAt, long loadNanos) {}
+
+    public record Stats(long hits, long staleHits, long misses, long coalesced, long loads, long evictions, Duration saved) {
+        public double hitRatio() {
+            long total = hits + staleHits + coalesced + misses;
+            return total == 0 ? 0 : (double) (total - misses) / total;
+        }
+    }
+
+    public ShopPriceCache(Duration ttl, Duration staleWhileRevalidate, int maxSize, Executor refreshExecutor) {
+        this.ttlNanos = ttl.toNanos();
+        this.staleNanos = staleWhileRevalidate.toNanos();
+        this.refreshExecutor = refreshExecutor;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() <= maxSize) { return false; }
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    // A Shop answering from this cache and calling the given shop only on misses and refreshes.
+    public Shop cached(Shop shop) {
+        return new CachingShop(shop);
+    }
+
+    private class CachingShop extends Shop {
+        private final Shop delegate;
+
+        CachingShop(Shop delegate) {
+            super(delegate.getName());
+            this.delegate = delegate;
+        }
+        @Override
+        public String getPrice(String product) { return ShopPriceCache.this.getPrice(delegate, product); }
+        // The cached price String already contains the base price.
+        @Override
+        public double getBasePrice(String product) { return Quote.parse(getPrice(product)).getPrice(); }
+    }
+
+    public String getPrice(Shop shop, String product) {
+        Key key = new Key(shop.getName(), product);
+        Entry entry;
+        synchronized (entries) { entry = entries.get(key); }
+        if (entry != null) {
+            long age = System.nanoTime() - entry.loadedAt();
+            if (age < ttlNanos) {
+                hits.increment();
+                savedNanos.add(entry.loadNanos());
+                return entry.price();
+            }
+            if (age < ttlNanos + staleNanos) {
+                staleHits.increment();
+                savedNanos.add(entry.loadNanos());
+                if (!loading.containsKey(key)) {
+                    refreshExecutor.execute(() -> load(shop, key));
+                }
+                return entry.price();
+            }
+        }
+        CompletableFuture<String> price = loading.get(key);
+        if (price != null) {
+            coalesced.increment();
+        } else {
+            misses.increment();
+            price = load(shop, key);
+        }
+        try {
+            return price.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) { throw cause; }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<String> load(Shop shop, Key key) {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> current = loading.putIfAbsent(key, mine);
+        if (current != null) { return current; }
+        try {
+            loads.increment();
+            long start = System.nanoTime();
+            String price = shop.getPrice(key.product());
+            long now = System.nanoTime();
+            synchronized (entries) { entries.put(key, new Entry(price, now, now - start)); }
+            mine.complete(price);
+        } catch (Throwable t) {
+            mine.completeExceptionally(t);
+        } finally {
+            loading.remove(key, mine);
+        }
+        return mine;
+    }
+
+    public int size() {
+        synchronized (entries) { return entries.size(); }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), staleHits.sum(), misses.sum(), coalesced.sum(), loads.sum(), evictions.sum(),
+            Duration.ofNanos(savedNanos.sum()));
+    }
+}
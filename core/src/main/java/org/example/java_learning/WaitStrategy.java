@@ -0,0 +1,107 @@
+package org.example.java_learning;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How a thread waits for a condition that another thread will make true, e.g. for a RingBufferQueue to become non-empty.
+ *  - spinning(): burns a core re-checking, the lowest latency as long as there are more cores than waiting threads.
+ *  - yielding(): spins a little, then gives the core to other threads between checks.
+ *  - parking(): spins, yields, then sleeps for exponentially longer periods up to 1 ms. Needs no signal, so the other side pays nothing.
+ *  - blocking(): yields a few times, then sleeps until signalled, like a Condition. Waiting doesn't hold a monitor, so virtual threads unmount from their carrier instead of pinning it, and a signal wakes one waiter rather than all of them as notifyAll does.
+ * An interrupted thread stops waiting with an InterruptedException, with its interrupt status cleared.
+ */
+public interface WaitStrategy {
+
+    // Returns once ready is true.
+    void await(BooleanSupplier ready) throws InterruptedException;
+
+    // Called after a change that could have made ready true for a waiting thread.
+    default void signal() {}
+
+    static WaitStrategy spinning() {
+        return ready -> {
+            while (!ready.getAsBoolean()) {
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                Thread.onSpinWait();
+            }
+        };
+    }
+
+    static WaitStrategy yielding() {
+        return ready -> {
+            for (int round = 0; !ready.getAsBoolean(); round++) {
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                if (round < 100) { Thread.onSpinWait(); }
+                else { Thread.yield(); }
+            }
+        };
+    }
+
+    static WaitStrategy parking() {
+        return ready -> {
+            long parkNanos = 1_000;
+            for (int round = 0; !ready.getAsBoolean(); round++) {
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                if (round < 100) { Thread.onSpinWait(); }
+                else if (round < 110) { Thread.yield(); }
+                else {
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            }
+        };
+    }
+
+    static WaitStrategy blocking() { return new Blocking(); }
+
+    class Blocking implements WaitStrategy {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public void await(BooleanSupplier ready) throws InterruptedException {
+            // A short wait is cheaper than sleeping and being woken up.
+            for (int round = 0; round < 20; round++) {
+                if (ready.getAsBoolean()) { return; }
+                if (Thread.interrupted()) { throw new InterruptedException(); }
+                Thread.yield();
+            }
+            lock.lockInterruptibly();
+            try {
+                // Registered before checking ready: a signal() following a change that this check missed sees the waiter, and can't get the lock before await() released it.
+                waiters.incrementAndGet();
+                try {
+                    while (!ready.getAsBoolean()) { changed.await(); }
+                } catch (InterruptedException e) {
+                    // The signal this thread may have consumed is passed on to another waiter.
+                    changed.signal();
+                    throw e;
+                } finally {
+                    waiters.decrementAndGet();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void signal() {
+            // The change, usually a release store, must not be reordered with the read of waiters.
+            VarHandle.fullFence();
+            if (waiters.get() == 0) { return; }
+            lock.lock();
+            try {
+                changed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
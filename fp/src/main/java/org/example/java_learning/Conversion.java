@@ -0,0 +1,101 @@
+package org.example.java_learning;
+
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * A unit conversion x * factor + baseline, the converter of Currying, kept as its two numbers instead of a capturing lambda.
+ *  - Chaining conversions (andThen, compose) fuses them into one Conversion: a * (x * c + d) + b is x * (a * c) + (a * d + b). A chain of conversions built with DoubleUnaryOperator.andThen is a lambda calling a lambda calling a lambda..., which the JIT stops inlining after a few levels; fused, any chain is one multiplication and one addition. Fusing may round differently from applying the steps one by one, in the last bits.
+ *  - convert(double[]...) converts arrays in a counted loop of one multiply-add per element, which C2 compiles to SIMD instructions; parallelConvert splits large arrays in chunks converted by the common ForkJoinPool.
+ * andThen and compose with a DoubleUnaryOperator that isn't a Conversion fall back to the usual composition.
+ */
+public final class Conversion implements DoubleUnaryOperator {
+
+    // Elements per parallel task: large enough to amortize a task, small enough to keep all cores busy till the end.
+    static final int CHUNK = 1 << 16;
+
+    private static final Conversion IDENTITY = new Conversion(1, 0);
+
+    private final double factor;
+    private final double baseline;
+
+    private Conversion(double factor, double baseline) {
+        this.factor = factor;
+        this.baseline = baseline;
+    }
+
+    // x * factor + baseline, as curriedConverter.
+    public static Conversion of(double factor, double baseline) { return new Conversion(factor, baseline); }
+
+    // (x + offset) * factor + baseline, as expandedCurriedConverter.
+    public static Conversion of(double offset, double factor, double baseline) { return new Conversion(factor, offset * factor + baseline); }
+
+    public static Conversion identity() { return IDENTITY; }
+
+    public double factor() { return factor; }
+
+    public double baseline() { return baseline; }
+
+    @Override
+    public double applyAsDouble(double x) { return x * factor + baseline; }
+
+    // This conversion, then next.
+    public Conversion then(Conversion next) {
+        return new Conversion(next.factor * factor, next.factor * baseline + next.baseline);
+    }
+
+    @Override
+    public DoubleUnaryOperator andThen(DoubleUnaryOperator after) {
+        return after instanceof Conversion next ? then(next) : DoubleUnaryOperator.super.andThen(after);
+    }
+
+    @Override
+    public DoubleUnaryOperator compose(DoubleUnaryOperator before) {
+        return before instanceof Conversion previous ? previous.then(this) : DoubleUnaryOperator.super.compose(before);
+    }
+
+    // The conversion back, e.g. °F to °C from °C to °F. The factor must not be 0.
+    public Conversion inverse() {
+        if (factor == 0) { throw new ArithmeticException("A conversion with factor 0 has no inverse"); }
+        return new Conversion(1 / factor, -baseline / factor);
+    }
+
+    public void convert(double[] values) { convert(values, 0, values, 0, values.length); }
+
+    public void convert(double[] from, double[] to) {
+        if (to.length < from.length) { throw new IllegalArgumentException("Target shorter than source: " + to.length + " < " + from.length); }
+        convert(from, 0, to, 0, from.length);
+    }
+
+    // The ranges may overlap in the same array: as with System.arraycopy, the result is as if the source was converted into a copy first.
+    public void convert(double[] from, int fromIndex, double[] to, int toIndex, int length) {
+        // Checked before writing anything, rather than failing half way through.
+        Objects.checkFromIndexSize(fromIndex, length, from.length);
+        Objects.checkFromIndexSize(toIndex, length, to.length);
+        // Locals, so that the loop reads no field.
+        double a = factor;
+        double b = baseline;
+        if (from == to && toIndex > fromIndex && toIndex < fromIndex + length) {
+            // The target starts inside the source: forwards, the loop would read elements it has already converted.
+            for (int i = length - 1; i >= 0; i--) { to[toIndex + i] = from[fromIndex + i] * a + b; }
+        } else {
+            for (int i = 0; i < length; i++) { to[toIndex + i] = from[fromIndex + i] * a + b; }
+        }
+    }
+
+    public void parallelConvert(double[] values) { parallelConvert(values, values); }
+
+    public void parallelConvert(double[] from, double[] to) {
+        if (to.length < from.length) { throw new IllegalArgumentException("Target shorter than source: " + to.length + " < " + from.length); }
+        // Not (length + CHUNK - 1) / CHUNK, which overflows for arrays within CHUNK of Integer.MAX_VALUE.
+        int chunks = from.length / CHUNK + (from.length % CHUNK == 0 ? 0 : 1);
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int start = chunk * CHUNK;
+            convert(from, start, to, start, Math.min(CHUNK, from.length - start));
+        });
+    }
+
+    @Override
+    public String toString() { return "x * " + factor + " + " + baseline; }
+}
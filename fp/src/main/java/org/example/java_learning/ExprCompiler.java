@@ -0,0 +1,306 @@
+package org.example.java_learning;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntUnaryOperator;
+
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.BinOp;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.Expr;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.Number;
+
+/**
+ * Compiles the Expr formulas of PatternMatching for evaluating them many times with different inputs, instead of interpreting the tree on every evaluation as evaluate does.
+ *  1. lower: the Expr tree becomes Nodes, the algebraic data type of Records (sealed interface, one record per operator: ConstantExpr, PlusExpr, TimesExpr, NegExpr there), so the operator String is compared once, here.
+ *  2. simplify: constants are folded and the identities of simplifyExpression applied bottom-up, in the whole tree and not only at its root, with record patterns.
+ *  3. compileInt, compileDouble: each Node becomes a lambda calling the lambdas of its operands, with special cases for the frequent shapes (a variable plus a constant, an operand times a constant...), so an evaluation makes a few direct calls per node without any test. Large int formulas become a Program instead, postfix code run in a loop.
+ * The lambdas could instead be one generated method, with the java.lang.classfile API; that API is a preview API up to JDK 23, so this keeps to closures, which the JIT inlines well for small formulas.
+ * Compiling and evaluating recurse on the depth of the formula, fine for formulas of thousands of nodes unless they are as deep as they are long.
+ */
+public final class ExprCompiler {
+
+    private ExprCompiler() {}
+
+    public sealed interface Node permits Const, Var, Plus, Minus, Times, Divide, Neg {}
+
+    public record Const(double value) implements Node {}
+
+    // 0 for x, 1 for y.
+    public record Var(int index) implements Node {}
+
+    public record Plus(Node a, Node b) implements Node {}
+
+    public record Minus(Node a, Node b) implements Node {}
+
+    public record Times(Node a, Node b) implements Node {}
+
+    public record Divide(Node a, Node b) implements Node {}
+
+    public record Neg(Node a) implements Node {}
+
+    public static Node lower(Expr expr) {
+        return switch (expr) {
+            case Number number -> new Const(number.val);
+            case PatternMatching.Var variable when "x".equals(variable.name) -> new Var(0);
+            case PatternMatching.Var variable when "y".equals(variable.name) -> new Var(1);
+            case PatternMatching.Var variable -> throw new IllegalArgumentException("Unknown variable " + variable.name);
+            case BinOp binOp -> switch (binOp.opname) {
+                case "+" -> new Plus(lower(binOp.left), lower(binOp.right));
+                case "-" -> new Minus(lower(binOp.left), lower(binOp.right));
+                case "*" -> new Times(lower(binOp.left), lower(binOp.right));
+                case "/" -> new Divide(lower(binOp.left), lower(binOp.right));
+                default -> throw new IllegalArgumentException("Unknown operator " + binOp.opname);
+            };
+            default -> throw new IllegalArgumentException("Unknown expression " + expr);
+        };
+    }
+
+    // integers: fold with the int arithmetic of compileInt (wrapping, truncating division), else with double arithmetic, applying only the rewrites that give exactly the same doubles (no reassociation).
+    public static Node simplify(Node node, boolean integers) {
+        return switch (node) {
+            case Const c -> c;
+            case Var v -> v;
+            case Plus(Node a, Node b) -> plus(simplify(a, integers), simplify(b, integers), integers);
+            case Minus(Node a, Node b) -> minus(simplify(a, integers), simplify(b, integers), integers);
+            case Times(Node a, Node b) -> times(simplify(a, integers), simplify(b, integers), integers);
+            case Divide(Node a, Node b) -> divide(simplify(a, integers), simplify(b, integers), integers);
+            case Neg(Node a) -> neg(simplify(a, integers), integers);
+        };
+    }
+
+    private static Node plus(Node a, Node b, boolean integers) {
+        if (a instanceof Const(double x) && b instanceof Const(double y)) { return new Const(integers ? (int) x + (int) y : x + y); }
+        // Constants to the right, so that the cases below and those of the compilers see them there.
+        if (a instanceof Const) { return plus(b, a, integers); }
+        // Not in doubles: -0.0 + 0 is 0.0.
+        if (integers && b instanceof Const(double y) && y == 0) { return a; }
+        // (a + c1) + c2 = a + (c1 + c2), only in ints, whose wrapping arithmetic is associative. In doubles the rounding, overflow and underflow would differ from the formula's.
+        if (integers && a instanceof Plus(Node inner, Const c1) && b instanceof Const c2) { return plus(inner, plus(c1, c2, integers), integers); }
+        return new Plus(a, b);
+    }
+
+    private static Node minus(Node a, Node b, boolean integers) {
+        if (a instanceof Const(double x) && b instanceof Const(double y)) { return new Const(integers ? (int) x - (int) y : x - y); }
+        if (b instanceof Const(double y) && y == 0) { return a; }
+        return new Minus(a, b);
+    }
+
+    private static Node times(Node a, Node b, boolean integers) {
+        if (a instanceof Const(double x) && b instanceof Const(double y)) { return new Const(integers ? (int) x * (int) y : x * y); }
+        if (a instanceof Const) { return times(b, a, integers); }
+        if (b instanceof Const(double y) && y == 1) { return a; }
+        // Only in ints, as in plus.
+        if (integers && a instanceof Times(Node inner, Const c1) && b instanceof Const c2) { return times(inner, times(c1, c2, integers), integers); }
+        return new Times(a, b);
+    }
+
+    private static Node divide(Node a, Node b, boolean integers) {
+        // An int division by zero is left to throw ArithmeticException when evaluated, as evaluate does.
+        if (a instanceof Const(double x) && b instanceof Const(double y) && !(integers && y == 0)) {
+            return new Const(integers ? (int) x / (int) y : x / y);
+        }
+        if (b instanceof Const(double y) && y == 1) { return a; }
+        return new Divide(a, b);
+    }
+
+    private static Node neg(Node a, boolean integers) {
+        if (a instanceof Const(double x)) { return new Const(integers ? -(int) x : -x); }
+        if (a instanceof Neg(Node inner)) { return inner; }
+        return new Neg(a);
+    }
+
+    // A formula of x in ints: a closure tree up to CLOSURE_TREE_MAX_NODES nodes, a Program above.
+    public static IntUnaryOperator compileInt(Expr expr) {
+        Node node = simplify(lower(expr), true);
+        return count(node) <= CLOSURE_TREE_MAX_NODES ? compileInt(node) : new Program(node);
+    }
+
+    // Past some tens of nodes, the calls between closures of many classes are megamorphic: the loop of Program gets faster (see ExprCompilerBenchmark).
+    static final int CLOSURE_TREE_MAX_NODES = 64;
+
+    private static int count(Node node) {
+        return switch (node) {
+            case Const c -> 1;
+            case Var v -> 1;
+            case Plus(Node a, Node b) -> 1 + count(a) + count(b);
+            case Minus(Node a, Node b) -> 1 + count(a) + count(b);
+            case Times(Node a, Node b) -> 1 + count(a) + count(b);
+            case Divide(Node a, Node b) -> 1 + count(a) + count(b);
+            case Neg(Node a) -> 1 + count(a);
+        };
+    }
+
+    /**
+     * A formula of x in ints as postfix code for a stack machine: one byte per node in an array, its constant operand in another, run by a loop and a switch, without calls.
+     */
+    public static final class Program implements IntUnaryOperator {
+        private static final byte CONST = 0;
+        private static final byte X = 1;
+        private static final byte PLUS = 2;
+        private static final byte MINUS = 3;
+        private static final byte TIMES = 4;
+        private static final byte DIVIDE = 5;
+        private static final byte NEG = 6;
+        private static final byte PLUS_CONST = 7;
+        private static final byte TIMES_CONST = 8;
+
+        private final byte[] code;
+        private final int[] operands;
+        private final int maxStack;
+        private int length;
+
+        public Program(Node node) {
+            int nodes = count(node);
+            code = new byte[nodes];
+            operands = new int[nodes];
+            maxStack = emit(node);
+        }
+
+        // Appends the code of node and returns the stack depth it needs.
+        private int emit(Node node) {
+            return switch (node) {
+                case Const(double value) -> add(CONST, (int) value, 1);
+                case Var(int index) when index == 0 -> add(X, 0, 1);
+                case Var v -> throw new IllegalArgumentException("A formula of x only, not of " + v);
+                case Plus(Node a, Const(double value)) -> add(PLUS_CONST, (int) value, emit(a));
+                case Times(Node a, Const(double value)) -> add(TIMES_CONST, (int) value, emit(a));
+                case Plus(Node a, Node b) -> binary(PLUS, a, b);
+                case Minus(Node a, Node b) -> binary(MINUS, a, b);
+                case Times(Node a, Node b) -> binary(TIMES, a, b);
+                case Divide(Node a, Node b) -> binary(DIVIDE, a, b);
+                case Neg(Node a) -> add(NEG, 0, emit(a));
+            };
+        }
+
+        private int binary(byte op, Node a, Node b) {
+            int depthA = emit(a);
+            int depthB = emit(b);
+            return add(op, 0, Math.max(depthA, 1 + depthB));
+        }
+
+        private int add(byte op, int operand, int depth) {
+            code[length] = op;
+            operands[length++] = operand;
+            return depth;
+        }
+
+        @Override
+        public int applyAsInt(int x) {
+            int[] stack = new int[maxStack];
+            int top = -1;
+            for (int pc = 0; pc < length; pc++) {
+                switch (code[pc]) {
+                    case CONST -> stack[++top] = operands[pc];
+                    case X -> stack[++top] = x;
+                    case PLUS -> { top--; stack[top] += stack[top + 1]; }
+                    case MINUS -> { top--; stack[top] -= stack[top + 1]; }
+                    case TIMES -> { top--; stack[top] *= stack[top + 1]; }
+                    case DIVIDE -> { top--; stack[top] /= stack[top + 1]; }
+                    case NEG -> stack[top] = -stack[top];
+                    case PLUS_CONST -> stack[top] += operands[pc];
+                    case TIMES_CONST -> stack[top] *= operands[pc];
+                    default -> throw new IllegalStateException("Bad code " + code[pc]);
+                }
+            }
+            return stack[top];
+        }
+    }
+
+    public static IntUnaryOperator compileInt(Node node) {
+        return switch (node) {
+            case Const(double value) -> {
+                int c = (int) value;
+                yield x -> c;
+            }
+            case Var(int index) when index == 0 -> x -> x;
+            case Var v -> throw new IllegalArgumentException("A formula of x only, not of " + v);
+            case Plus(Var v, Const(double value)) when v.index() == 0 -> {
+                int c = (int) value;
+                yield x -> x + c;
+            }
+            case Plus(Node a, Const(double value)) -> {
+                IntUnaryOperator fa = compileInt(a);
+                int c = (int) value;
+                yield x -> fa.applyAsInt(x) + c;
+            }
+            case Plus(Node a, Node b) -> {
+                IntUnaryOperator fa = compileInt(a);
+                IntUnaryOperator fb = compileInt(b);
+                yield x -> fa.applyAsInt(x) + fb.applyAsInt(x);
+            }
+            case Minus(Node a, Node b) -> {
+                IntUnaryOperator fa = compileInt(a);
+                IntUnaryOperator fb = compileInt(b);
+                yield x -> fa.applyAsInt(x) - fb.applyAsInt(x);
+            }
+            case Times(Var v, Const(double value)) when v.index() == 0 -> {
+                int c = (int) value;
+                yield x -> x * c;
+            }
+            case Times(Node a, Const(double value)) -> {
+                IntUnaryOperator fa = compileInt(a);
+                int c = (int) value;
+                yield x -> fa.applyAsInt(x) * c;
+            }
+            case Times(Var a, Var b) -> {
+                if (a.index() != 0 || b.index() != 0) { throw new IllegalArgumentException("A formula of x only"); }
+                yield x -> x * x;
+            }
+            case Times(Node a, Node b) -> {
+                IntUnaryOperator fa = compileInt(a);
+                IntUnaryOperator fb = compileInt(b);
+                yield x -> fa.applyAsInt(x) * fb.applyAsInt(x);
+            }
+            case Divide(Node a, Node b) -> {
+                IntUnaryOperator fa = compileInt(a);
+                IntUnaryOperator fb = compileInt(b);
+                yield x -> fa.applyAsInt(x) / fb.applyAsInt(x);
+            }
+            case Neg(Node a) -> {
+                IntUnaryOperator fa = compileInt(a);
+                yield x -> -fa.applyAsInt(x);
+            }
+        };
+    }
+
+    // A formula of x and y in doubles.
+    public static DoubleBinaryOperator compileDouble(Expr expr) { return compileDouble(simplify(lower(expr), false)); }
+
+    public static DoubleBinaryOperator compileDouble(Node node) {
+        return switch (node) {
+            case Const(double c) -> (x, y) -> c;
+            case Var(int index) -> index == 0 ? (x, y) -> x : (x, y) -> y;
+            case Plus(Node a, Const(double c)) -> {
+                DoubleBinaryOperator fa = compileDouble(a);
+                yield (x, y) -> fa.applyAsDouble(x, y) + c;
+            }
+            case Plus(Node a, Node b) -> {
+                DoubleBinaryOperator fa = compileDouble(a);
+                DoubleBinaryOperator fb = compileDouble(b);
+                yield (x, y) -> fa.applyAsDouble(x, y) + fb.applyAsDouble(x, y);
+            }
+            case Minus(Node a, Node b) -> {
+                DoubleBinaryOperator fa = compileDouble(a);
+                DoubleBinaryOperator fb = compileDouble(b);
+                yield (x, y) -> fa.applyAsDouble(x, y) - fb.applyAsDouble(x, y);
+            }
+            case Times(Node a, Const(double c)) -> {
+                DoubleBinaryOperator fa = compileDouble(a);
+                yield (x, y) -> fa.applyAsDouble(x, y) * c;
+            }
+            case Times(Node a, Node b) -> {
+                DoubleBinaryOperator fa = compileDouble(a);
+                DoubleBinaryOperator fb = compileDouble(b);
+                yield (x, y) -> fa.applyAsDouble(x, y) * fb.applyAsDouble(x, y);
+            }
+            case Divide(Node a, Node b) -> {
+                DoubleBinaryOperator fa = compileDouble(a);
+                DoubleBinaryOperator fb = compileDouble(b);
+                yield (x, y) -> fa.applyAsDouble(x, y) / fb.applyAsDouble(x, y);
+            }
+            case Neg(Node a) -> {
+                DoubleBinaryOperator fa = compileDouble(a);
+                yield (x, y) -> -fa.applyAsDouble(x, y);
+            }
+        };
+    }
+}
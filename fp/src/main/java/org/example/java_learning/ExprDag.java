@@ -0,0 +1,266 @@
+package org.example.java_learning;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.BinOp;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.Expr;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.Number;
+
+/**
+ * A factory of hash-consed formulas: asking it twice for the same operator on the same operands returns the same Term, so equal subformulas are stored once and compared with ==. A formula is then a DAG rather than a tree, x * x + x * x holding one x * x.
+ *  - Terms are interned in a ConcurrentHashMap, keyed by their operator, constant and operands, the operands being compared by identity, which makes interning O(1) whatever the size of the subformulas.
+ *  - simplify is memoized in each Term: simplifying a formula again, or a formula sharing subformulas with one already simplified, only costs the nodes never simplified yet. Results are interned too, the rules being those of ExprCompiler in ints.
+ *  - evaluate runs over the distinct nodes reachable from the formula, in the order they were created (operands are always created before the formulas using them), once each, in a loop: O(distinct nodes) and no recursion, however large the formula would be as a tree.
+ * The memory of a formula is its number of distinct nodes, distinctNodes(formula), against treeSize(formula) for the same formula made of PatternMatching's BinOp and Number, which repeat each subformula.
+ * Terms of different factories must not be mixed. A factory keeps all its Terms: use one per batch of formulas.
+ */
+public final class ExprDag {
+
+    private static final byte CONST = 0;
+    private static final byte X = 1;
+    private static final byte PLUS = 2;
+    private static final byte MINUS = 3;
+    private static final byte TIMES = 4;
+    private static final byte DIVIDE = 5;
+    private static final byte NEG = 6;
+    private static final String[] NAMES = { "", "x", "+", "-", "*", "/", "-" };
+
+    public static final class Term {
+        private final byte op;
+        private final int value;
+        private final Term left;
+        private final Term right;
+        private final int hash;
+        // The creation order, so operands have lower ids than the formulas using them.
+        private final int id;
+        // Cached; racing threads compute the same interned Terms, so plain fields are enough: a Term or Schedule read through a race is still seen complete, all its fields being final.
+        private Term simplified;
+        private Schedule schedule;
+
+        private Term(byte op, int value, Term left, Term right, int id) {
+            this.op = op;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.id = id;
+            hash = 31 * (31 * (31 * op + value) + System.identityHashCode(left)) + System.identityHashCode(right);
+        }
+
+        // Equal keys for interning: the same operator and constant, and the very same operands.
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Term t && t.op == op && t.value == value && t.left == left && t.right == right;
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public String toString() {
+            return switch (op) {
+                case CONST -> Integer.toString(value);
+                case X -> "x";
+                case NEG -> "-" + left;
+                default -> "(" + left + " " + NAMES[op] + " " + right + ")";
+            };
+        }
+    }
+
+    private final ConcurrentHashMap<Term, Term> terms = new ConcurrentHashMap<>();
+    private final AtomicInteger ids = new AtomicInteger();
+    private final Term x = intern(X, 0, null, null);
+
+    // Looked up with a key without id, so that only new Terms take one (and those losing a race to be interned, which leaves a gap).
+    private Term intern(byte op, int value, Term left, Term right) {
+        Term existing = terms.get(new Term(op, value, left, right, -1));
+        if (existing != null) { return existing; }
+        Term term = new Term(op, value, left, right, ids.getAndIncrement());
+        existing = terms.putIfAbsent(term, term);
+        return existing == null ? term : existing;
+    }
+
+    public Term constant(int value) { return intern(CONST, value, null, null); }
+
+    public Term x() { return x; }
+
+    public Term plus(Term a, Term b) { return intern(PLUS, 0, a, b); }
+
+    public Term minus(Term a, Term b) { return intern(MINUS, 0, a, b); }
+
+    public Term times(Term a, Term b) { return intern(TIMES, 0, a, b); }
+
+    public Term divide(Term a, Term b) { return intern(DIVIDE, 0, a, b); }
+
+    public Term neg(Term a) { return intern(NEG, 0, a, null); }
+
+    // Distinct Terms made by this factory.
+    public int size() { return terms.size(); }
+
+    public Term of(Expr expr) {
+        if (expr instanceof Number number) { return constant(number.val); }
+        if (expr instanceof PatternMatching.Var variable && "x".equals(variable.name)) { return x; }
+        if (expr instanceof BinOp binOp) {
+            Term left = of(binOp.left);
+            Term right = of(binOp.right);
+            return switch (binOp.opname) {
+                case "+" -> plus(left, right);
+                case "-" -> minus(left, right);
+                case "*" -> times(left, right);
+                case "/" -> divide(left, right);
+                default -> throw new IllegalArgumentException("Unknown operator " + binOp.opname);
+            };
+        }
+        throw new IllegalArgumentException("Unknown expression " + expr);
+    }
+
+    public Term simplify(Term term) {
+        Term simplified = term.simplified;
+        if (simplified != null) { return simplified; }
+        simplified = switch (term.op) {
+            case CONST, X -> term;
+            case PLUS -> simplifyPlus(simplify(term.left), simplify(term.right));
+            case MINUS -> simplifyMinus(simplify(term.left), simplify(term.right));
+            case TIMES -> simplifyTimes(simplify(term.left), simplify(term.right));
+            case DIVIDE -> simplifyDivide(simplify(term.left), simplify(term.right));
+            case NEG -> simplifyNeg(simplify(term.left));
+            default -> throw new IllegalStateException("Bad operator " + term.op);
+        };
+        simplified.simplified = simplified;
+        term.simplified = simplified;
+        return simplified;
+    }
+
+    private Term simplifyPlus(Term a, Term b) {
+        if (a.op == CONST && b.op == CONST) { return constant(a.value + b.value); }
+        if (a.op == CONST) { return simplifyPlus(b, a); }
+        if (b.op == CONST && b.value == 0) { return a; }
+        if (a.op == PLUS && a.right.op == CONST && b.op == CONST) { return simplifyPlus(a.left, constant(a.right.value + b.value)); }
+        return plus(a, b);
+    }
+
+    private Term simplifyMinus(Term a, Term b) {
+        if (a.op == CONST && b.op == CONST) { return constant(a.value - b.value); }
+        if (b.op == CONST && b.value == 0) { return a; }
+        // Only pure terms here, so a - a is 0 whatever a.
+        if (a == b && !dividesByZero(a)) { return constant(0); }
+        return minus(a, b);
+    }
+
+    private Term simplifyTimes(Term a, Term b) {
+        if (a.op == CONST && b.op == CONST) { return constant(a.value * b.value); }
+        if (a.op == CONST) { return simplifyTimes(b, a); }
+        if (b.op == CONST && b.value == 1) { return a; }
+        if (a.op == TIMES && a.right.op == CONST && b.op == CONST) { return simplifyTimes(a.left, constant(a.right.value * b.value)); }
+        return times(a, b);
+    }
+
+    private Term simplifyDivide(Term a, Term b) {
+        // A division by zero is left to throw ArithmeticException when evaluated.
+        if (a.op == CONST && b.op == CONST && b.value != 0) { return constant(a.value / b.value); }
+        if (b.op == CONST && b.value == 1) { return a; }
+        return divide(a, b);
+    }
+
+    private Term simplifyNeg(Term a) {
+        if (a.op == CONST) { return constant(-a.value); }
+        if (a.op == NEG) { return a.left; }
+        return neg(a);
+    }
+
+    // Whether a simplified term may divide by zero, conservatively: any division by something else than a constant other than 0.
+    private static boolean dividesByZero(Term term) {
+        for (Term t : schedule(term).terms) {
+            if (t.op == DIVIDE && (t.right.op != CONST || t.right.value == 0)) { return true; }
+        }
+        return false;
+    }
+
+    // The distinct Terms of a formula in creation order, with the positions of their operands in it.
+    private record Schedule(Term[] terms, int[] left, int[] right) {}
+
+    private static Schedule schedule(Term root) {
+        Schedule schedule = root.schedule;
+        if (schedule != null) { return schedule; }
+        BitSet seen = new BitSet();
+        int count = 0;
+        Term[] found = new Term[16];
+        ArrayDeque<Term> stack = new ArrayDeque<>();
+        stack.push(root);
+        seen.set(root.id);
+        while (!stack.isEmpty()) {
+            Term term = stack.pop();
+            if (count == found.length) { found = Arrays.copyOf(found, count * 2); }
+            found[count++] = term;
+            push(term.left, seen, stack);
+            push(term.right, seen, stack);
+        }
+        Term[] terms = Arrays.copyOf(found, count);
+        Arrays.sort(terms, (a, b) -> Integer.compare(a.id, b.id));
+        int[] left = new int[count];
+        int[] right = new int[count];
+        // Positions by id, looked up by binary search in the sorted ids.
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) { ids[i] = terms[i].id; }
+        for (int i = 0; i < count; i++) {
+            if (terms[i].left != null) { left[i] = Arrays.binarySearch(ids, terms[i].left.id); }
+            if (terms[i].right != null) { right[i] = Arrays.binarySearch(ids, terms[i].right.id); }
+        }
+        schedule = new Schedule(terms, left, right);
+        root.schedule = schedule;
+        return schedule;
+    }
+
+    private static void push(Term operand, BitSet seen, ArrayDeque<Term> stack) {
+        if (operand != null && !seen.get(operand.id)) {
+            seen.set(operand.id);
+            stack.push(operand);
+        }
+    }
+
+    public static int evaluate(Term term, int x) {
+        Schedule schedule = schedule(term);
+        Term[] terms = schedule.terms();
+        int[] left = schedule.left();
+        int[] right = schedule.right();
+        int[] values = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            values[i] = switch (terms[i].op) {
+                case CONST -> terms[i].value;
+                case X -> x;
+                case PLUS -> values[left[i]] + values[right[i]];
+                case MINUS -> values[left[i]] - values[right[i]];
+                case TIMES -> values[left[i]] * values[right[i]];
+                case DIVIDE -> values[left[i]] / values[right[i]];
+                case NEG -> -values[left[i]];
+                default -> throw new IllegalStateException("Bad operator " + terms[i].op);
+            };
+        }
+        return values[terms.length - 1];
+    }
+
+    public static int distinctNodes(Term term) { return schedule(term).terms().length; }
+
+    // The nodes of the same formula as a tree, each subformula repeated wherever it's used (saturates at Long.MAX_VALUE).
+    public static long treeSize(Term term) {
+        Schedule schedule = schedule(term);
+        Term[] terms = schedule.terms();
+        long[] sizes = new long[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            long size = 1;
+            if (terms[i].left != null) { size = saturatedAdd(size, sizes[schedule.left()[i]]); }
+            if (terms[i].right != null) { size = saturatedAdd(size, sizes[schedule.right()[i]]); }
+            sizes[i] = size;
+        }
+        return sizes[terms.length - 1];
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+}
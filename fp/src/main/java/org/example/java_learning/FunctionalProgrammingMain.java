@@ -2,6 +2,9 @@ package org.example.java_learning;
 
 import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
@@ -76,6 +79,54 @@ Java compiler doesn't support tail-call optimization yet (Scala, Groovy, and Kot
     }
  The intermediate results (the partial results of the factorial) are passed directly as arguments to the function. There’s no need to keep track of the intermediate result of each recursive call on a separate stack frame; it’s accessible directly as the first argument of factorialHelper
 */
+    /**
+     * Recursion without stack overflow.
+     */
+    public static class Recursion {
+        static long factorialTailRecursive(long n) {
+            return factorialHelper(1, n);
+        }
+        static long factorialHelper(long acc, long n) {
+            return n == 1 ? acc : factorialHelper(acc * n, n - 1);
+        }
+        // Until Java eliminates tail calls, a trampoline does: the recursive call becomes a step returned to a loop, which runs it (see Trampoline).
+        static Trampoline<Long> factorialHelperTrampolined(long acc, long n) {
+            return n == 1 ? Trampoline.done(acc) : Trampoline.more(() -> factorialHelperTrampolined(acc * n, n - 1));
+        }
+        // A step allocates a Supplier and a Trampoline (and boxes acc). For a function calling only itself, the body may instead hand the next arguments to self, which reuses one frame for all the calls.
+        static final LongBinaryOperator FACTORIAL_HELPER = Trampoline.tailRecursive((acc, n, self) -> n == 1 ? acc : self.call(acc * n, n - 1));
+        static long factorialTrampolined(long n) {
+            return FACTORIAL_HELPER.applyAsLong(1, n);
+        }
+        // functionalAppend isn't tail recursive, it builds a node around the result of its recursive call: map keeps this on the heap.
+        static Trampoline<TrainJourney> functionalAppendTrampolined(TrainJourney a, TrainJourney b) {
+            return a == null ?
+                Trampoline.done(b) :
+                Trampoline.more(() -> functionalAppendTrampolined(a.onward, b)).map(onward -> new TrainJourney(a.price, onward));
+        }
+        public static void testTrampoline() {
+            int depth = 10_000_000;
+            try {
+                factorialTailRecursive(depth);
+            } catch (StackOverflowError e) {
+                System.out.println("factorialTailRecursive: StackOverflowError");
+            }
+            // A long overflows after 20! and the product is 0 from 66! on, what matters here is the depth. All three print 0.
+            System.out.println(factorialHelperTrampolined(1, depth).run());
+            System.out.println(factorialTrampolined(depth));
+            long acc = 1;
+            for (long n = depth; n > 1; n--) { acc *= n; }
+            System.out.println(acc);
+
+            TrainJourney a = null;
+            for (int i = 0; i < 1_000_000; i++) { a = new TrainJourney(i, a); }
+            TrainJourney appended = functionalAppendTrampolined(a, new TrainJourney(-1, null)).run();
+            int legs = 0;
+            for (TrainJourney t = appended; t != null; t = t.onward) { legs++; }
+            // = 1000001, the first journey unchanged.
+            System.out.println(legs);
+        }
+    }
 
 
 /*
@@ -105,11 +156,12 @@ Functions passed to stream operations generally are side effect-free. This princ
             return x * y + z;
         }
         // Here, x is the quantity you want to convert, f is the conversion factor, and b is the baseline. But this method is a bit too general. Typically, you require a lot of conversions between the same pair of units, such as kilometers to miles. You could call the converter method with three arguments on each occasion, but supplying the factor and baseline each time would be tedious, and you might accidentally mistype them. You could write a new method for each application, but doing so would miss the reuse of the underlying logic. You can define a factory that manufactures one-argument conversion functions to exemplify the idea of currying:
+        // Returning a Conversion, the function (double x) -> x * y + z kept as y and z, so that chaining converters with andThen fuses them into a single one.
         static DoubleUnaryOperator curriedConverter(double y, double z) {
-            return (double x) -> x * y + z;
+            return Conversion.of(y, z);
         }
         static DoubleUnaryOperator expandedCurriedConverter(double w, double y, double z) {
-            return (double x) -> (x + w) * y + z;
+            return Conversion.of(w, y, z);
         }
         // Now all you have to do is pass curriedConverter the conversion factor and baseline (f and b), and it obligingly returns a function (of x) to do what you asked for. Then you can use the factory to produce any converter you require, as follows:
         public static void currying() {
@@ -139,6 +191,24 @@ Functions passed to stream operations generally are side effect-free. This princ
         void testmultiplyCurry() {
             Stream.of(1, 3, 5, 7).map(multiplyCurry(2)).forEach(System.out::println);
         }
+
+        // Converters chained with andThen are fused: °C to °F then °F to °C is the identity, and km to miles then miles to yards a single multiplication.
+        public static void testConversionFusion() {
+            DoubleUnaryOperator roundTrip = curriedConverter(9.0 / 5, 32).andThen(expandedCurriedConverter(-32, 5.0 / 9, 0));
+            // Prints: x * 1.0 + 0.0
+            System.out.println(roundTrip);
+            DoubleUnaryOperator kmToYards = curriedConverter(0.6214, 0).andThen(curriedConverter(1760, 0));
+            System.out.printf("20 km = %.1f yards%n", kmToYards.applyAsDouble(20));
+
+            // Bulk conversion of readings, in parallel chunks.
+            double[] celsius = new double[10_000_000];
+            for (int i = 0; i < celsius.length; i++) { celsius[i] = i % 100 - 40; }
+            double[] fahrenheit = new double[celsius.length];
+            Conversion cToF = Conversion.of(9.0 / 5, 32);
+            long start = System.nanoTime();
+            cToF.parallelConvert(celsius, fahrenheit);
+            System.out.printf("%d readings in %d ms, -40 °C = %.1f °F%n", celsius.length, (System.nanoTime() - start) / 1_000_000, fahrenheit[0]);
+        }
     }
 
     /**
@@ -238,6 +308,59 @@ Functions passed to stream operations generally are side effect-free. This princ
             // f2 built from t altered by update() above, so Jim is still present = 40
             System.out.printf("Jim: %d%n", Tree.lookup("Jim", -1, f2));
         }
+
+        // functionalUpdate copies the path to the key, which is short only while the tree is balanced. Keys inserted in sorted order (ids, timestamps) make Tree a linked list: every update copies all the nodes, and functionalUpdate recursing once per node overflows the stack after some thousands of keys.
+        // PersistentTreeMap (common) rebalances as an AVL tree, so the path stays O(log n) whatever the order of the keys, and adds what versioning needs: a Builder for bulk loads, merge and diff of two versions skipping the subtrees they share.
+        public static void testPersistentTreeMap() {
+            int n = 1_000_000;
+            PersistentTreeMap.Builder<String, Integer> builder = PersistentTreeMap.builder();
+            // Sorted keys, the worst case of Tree.
+            for (int i = 0; i < n; i++) { builder.put("key%07d".formatted(i), i); }
+            PersistentTreeMap<String, Integer> v1 = builder.build();
+
+            PersistentTreeMap<String, Integer> v2 = v1.put("key0000042", -42).remove("key0000007").put("new", 1);
+            // v1 is unchanged = 42 7
+            System.out.printf("v1: %d %d%n", v1.get("key0000042"), v1.get("key0000007"));
+            // = -42 null 1000000
+            System.out.printf("v2: %d %s %d%n", v2.get("key0000042"), v2.get("key0000007"), v2.size());
+            // Only the paths to the three keys differ, so this doesn't look at the other million entries. Prints:
+            //   Change[key=key0000007, oldValue=7, newValue=null]
+            //   Change[key=key0000042, oldValue=42, newValue=-42]
+            //   Change[key=new, oldValue=null, newValue=1]
+            v1.diff(v2, System.out::println);
+
+            PersistentTreeMap<String, Integer> v3 = v1.put("key0000042", 4200);
+            // A three-way merge of the two branches of v1: only what v3 changed from v1 is visited. Both branches changed key0000042, the resolver sums the values = -42 + 4200 = 4158; key0000007, removed by v2 only, stays removed = 4158 1000000
+            PersistentTreeMap<String, Integer> merged = v2.merge(v1, v3, Integer::sum);
+            System.out.printf("merged: %d %d%n", merged.get("key0000042"), merged.size());
+        }
+
+        // The versioning system itself: VersionedStore (common) publishes the versions of a PersistentTreeMap through an AtomicReference, so the statistical analysis works on a version nobody can change while writers commit newer ones, without any lock.
+        public static void testVersionedStore() throws InterruptedException {
+            VersionedStore<String, Integer> ages = new VersionedStore<>(PersistentTreeMap.<String, Integer>empty().put("Mary", 22).put("Emily", 20), 3);
+            VersionedStore.Version<String, Integer> release = ages.tag("release");
+
+            Thread[] writers = new Thread[4];
+            for (int i = 0; i < writers.length; i++) {
+                int writer = i;
+                // Each commit adds a year to Mary, concurrent commits are retried so no year is lost.
+                writers[i] = Thread.ofPlatform().start(() -> {
+                    for (int j = 1; j <= 1000; j++) {
+                        int commits = j;
+                        ages.commit(map -> map.put("Mary", map.get("Mary") + 1).put("writer" + writer, commits));
+                    }
+                });
+            }
+            // Meanwhile the analysis keeps reading its version = 22 2
+            System.out.printf("release: Mary %d, %d people%n", release.map().get("Mary"), release.map().size());
+            for (Thread writer : writers) { writer.join(); }
+
+            // = 4022 6, version 4000
+            System.out.printf("current: Mary %d, %d people, version %d%n", ages.get("Mary"), ages.map().size(), ages.snapshot().number());
+            // Only the last 3 numbered versions are retained, the tagged one stays = true false true
+            System.out.printf("%b %b %b%n", ages.version(4000).isPresent(), ages.version(10).isPresent(), ages.version(0).isPresent());
+            System.out.printf("commits %d, retries %d%n", ages.commits(), ages.retries());
+        }
     }
 
     /**
@@ -399,6 +522,27 @@ Functions passed to stream operations generally are side effect-free. This princ
         }
         // There remains the question of performance. It’s easy to assume that doing things lazily is better than doing things eagerly. Surely, it’s better to calculate only the values and data structures needed by a program on demand than to create all those values (and perhaps more), as done in traditional execution. Unfortunately, the real world isn’t so simple. The overhead of doing things lazily (such as the additional Suppliers between items in a LazyList) outweighs the notional benefit unless you explore, say, less than 10 % of the data structure. Finally, there’s a subtle way in which a LazyList values aren’t truly lazy. If you traverse a LazyList value such as from(2), perhaps up to the 10th item, it also creates all the nodes twice, creating 20 nodes rather than 10. This result is hardly lazy. The issue is that the Supplier in tail is repeatedly called on each on-demand exploration of the LazyList. You can fix this problem by arranging for the Supplier in tail to be called only on the first on-demand exploration, with the resulting value being cached, in effect solidifying the list at that point. To achieve this goal, add a private Optional<LazyList<T>> alreadyComputed field to your definition of LazyList and arrange for the tail method to consult and update it appropriately. The pure functional language Haskell arranges that all its data structures are properly lazy in the latter sense.
         // Lazy data structures can be useful weapons in a programming armory. Use these structures when they make an application easier to program; rewrite them in more traditional style if they cause unacceptable inefficiency.
+        // LazySeq is that properly lazy list: each tail is computed once, even by concurrent threads, and filter fuses the filters of the sieve so that forcing the n-th prime no longer takes n nested calls.
+        public static LazySeq.OfInt primes(LazySeq.OfInt numbers) {
+            int head = numbers.head();
+            return LazySeq.OfInt.cons(head, () -> primes(numbers.tail().filter(n -> n % head != 0)));
+        }
+        public static void testLazySeq() {
+            LazySeq.OfInt primes = primes(LazySeq.OfInt.from(2));
+            long start = System.nanoTime();
+            // The 10000th prime = 104729, LazyList overflows the stack long before.
+            int first = primes.get(9_999);
+            long firstTraversal = System.nanoTime() - start;
+            start = System.nanoTime();
+            int second = primes.get(9_999);
+            long secondTraversal = System.nanoTime() - start;
+            // The second traversal only follows the memoized nodes, e.g. "104729 in 229 ms, then 104729 in 2 ms"
+            System.out.printf("%d in %d ms, then %d in %d ms%n", first, firstTraversal / 1_000_000, second, secondTraversal / 1_000_000);
+            // A forced prefix may be consumed in parallel = 496165411
+            System.out.println(primes.prefix(10_000).parallel().asLongStream().sum());
+            // Boxed elements, printed without recursion, unlike printAll.
+            LazySeq.iterate(1, i -> i * 2).take(10).forEach(System.out::println);
+        }
     }
 
     /**
@@ -504,6 +648,13 @@ Functions passed to stream operations generally are side effect-free. This princ
             @Override
             public String toString() { return "(" + left + " " + opname + " " + right + ")"; }
         }
+        // A variable, x or y, for the formulas evaluated with many inputs (see ExprCompiler).
+        static class Var extends Expr {
+            String name;
+            public Var(String name) { this.name = name; }
+            @Override
+            public String toString() { return name; }
+        }
         /*
         The result is that the method call:
             patternMatchExpr(
@@ -580,6 +731,59 @@ Functions passed to stream operations generally are side effect-free. This princ
             Integer result = evaluate(expr);
             System.out.println(expr + " = " + result);
         }
+        // A formula with a variable x evaluated for many values of x is interpreted again for every value: each node is matched and its opname compared as a String.
+        static int evaluate(Expr e, int x) {
+            if (e instanceof Number number) { return number.val; }
+            if (e instanceof Var) { return x; }
+            BinOp binOp = (BinOp) e;
+            int left = evaluate(binOp.left, x);
+            int right = evaluate(binOp.right, x);
+            return switch (binOp.opname) {
+                case "+" -> left + right;
+                case "-" -> left - right;
+                case "*" -> left * right;
+                case "/" -> left / right;
+                default -> throw new IllegalArgumentException("Unknown operator " + binOp.opname);
+            };
+        }
+        // ExprCompiler does this work once: it simplifies the formula, then turns it into a tree of lambdas, each node specialized for its operator.
+        public static void testExprCompiler() {
+            // (x * 1 + 2 * 3) + (0 + x * x)
+            Expr expr = new BinOp("+",
+                new BinOp("+", new BinOp("*", new Var("x"), new Number(1)), new BinOp("*", new Number(2), new Number(3))),
+                new BinOp("+", new Number(0), new BinOp("*", new Var("x"), new Var("x"))));
+            // Prints: Plus[a=Plus[a=Var[index=0], b=Const[value=6.0]], b=Times[a=Var[index=0], b=Var[index=0]]]
+            System.out.println(ExprCompiler.simplify(ExprCompiler.lower(expr), true));
+            IntUnaryOperator f = ExprCompiler.compileInt(expr);
+            // = 18 18
+            System.out.println(evaluate(expr, 3) + " " + f.applyAsInt(3));
+            // x / y in doubles = 0.5
+            System.out.println(ExprCompiler.compileDouble(new BinOp("/", new Var("x"), new Var("y"))).applyAsDouble(1, 2));
+        }
+        // Generated formulas repeat their subformulas, which BinOp and Number store and simplify again at every occurrence. ExprDag stores each distinct subformula once (hash-consing) and remembers its simplification.
+        public static void testExprDag() {
+            ExprDag dag = new ExprDag();
+            Expr expr = new BinOp("+", new BinOp("*", new Var("x"), new Number(2)), new BinOp("*", new Var("x"), new Number(2)));
+            // The same formula gives the same Term, and x * 2 is one Term used twice = true true
+            ExprDag.Term term = dag.of(expr);
+            System.out.println((term == dag.of(expr)) + " " + (dag.of(((BinOp) expr).left) == dag.of(((BinOp) expr).right)));
+
+            // f(k + 1) = f(k) * f(k) + (f(k) + 0): a tree three times as large at every step, three more nodes in the DAG.
+            ExprDag.Term f = dag.x();
+            for (int k = 0; k < 50; k++) { f = dag.plus(dag.times(f, f), dag.plus(f, dag.constant(0))); }
+            // = 152 distinct nodes for a tree of more than 3^50 nodes (treeSize saturates at Long.MAX_VALUE)
+            System.out.printf("%d distinct nodes, %d as a tree%n", ExprDag.distinctNodes(f), ExprDag.treeSize(f));
+            long start = System.nanoTime();
+            ExprDag.Term simplified = dag.simplify(f);
+            long first = System.nanoTime() - start;
+            start = System.nanoTime();
+            dag.simplify(f);
+            long again = System.nanoTime() - start;
+            // The + 0 are gone = 101 distinct nodes, simplified in a millisecond or two (JIT included), then in a single read of the memoized result.
+            System.out.printf("%d distinct nodes, simplified in %d µs, again in %d ns%n", ExprDag.distinctNodes(simplified), first / 1000, again);
+            // One operation per distinct node, where the tree would take 3^50 = 1048004806 (ints wrap)
+            System.out.println(ExprDag.evaluate(simplified, 1));
+        }
     }
 
     /**
@@ -605,5 +809,30 @@ Functions passed to stream operations generally are side effect-free. This princ
             // Prints: 80
             System.out.println(Combinators.repeat(3, (Integer x) -> 2 * x).apply(10));
         }
+
+        // Referential transparency lets a pure function save its results instead of recomputing them, memoization. Memo makes memoized versions of functions, thread-safe and computing each result once.
+        static final LongUnaryOperator FIBONACCI = Memo.recursiveLongs((fib, n) -> n < 2 ? n : fib.applyAsLong(n - 1) + fib.applyAsLong(n - 2));
+        public static void testMemo() {
+            // Without memoization some 10^19 calls, here 91 = 2880067194370816120
+            System.out.println(FIBONACCI.applyAsLong(90));
+
+            int[] conversions = new int[1];
+            Function<Double, Double> kmToMi = Memo.function(km -> {
+                conversions[0]++;
+                return Currying.curriedConverter(0.6214, 0).applyAsDouble(km);
+            }, Memo.Storage.lru(1000));
+            Stream.of(20.0, 42.195, 20.0, 20.0).map(kmToMi).forEach(System.out::println);
+            // = 2
+            System.out.println(conversions[0]);
+
+            // Any number of threads asking for the same key, the square root is computed once = 1
+            int[] roots = new int[1];
+            IntUnaryOperator sqrt = Memo.ints(n -> {
+                synchronized (roots) { roots[0]++; }
+                return (int) Math.sqrt(n);
+            });
+            IntStream.range(0, 1000).parallel().map(i -> sqrt.applyAsInt(1_000_000)).sum();
+            System.out.println(roots[0]);
+        }
     }
 }
@@ -0,0 +1,420 @@
+package org.example.java_learning;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The LazyList of LazyEvaluation, made properly lazy in the Haskell sense its last comment asks for, and usable on long sequences.
+ *  - Memoized: the tail Supplier of a node is called once, by the first tail(), and the node keeps the result, so traversing primes twice computes it once. The first forcing is synchronized on the node, other threads forcing it meanwhile wait and get the same tail; once forced, reading a tail is a volatile read.
+ *  - Stack safe: forEach, get, take and the iterators are loops. filter skips rejected elements in a loop too, and fuses with the filter producing the list: the sieve of primes filters the result of a filter of a filter..., which LazyList forces with one nested call per prime found (a StackOverflowError after a few thousand primes), while here the predicates are kept in one array, tested in a loop.
+ *  - OfInt and OfLong hold primitive heads, without boxing.
+ *  - stream() is a sequential, infinite-friendly bridge; prefix(n) forces the first n elements into an array whose Spliterator splits evenly, for parallel streams.
+ * Nodes are never modified once forced, so a LazySeq may be shared between threads freely. Heads must not be null.
+ */
+public final class LazySeq<T> implements Iterable<T> {
+
+    private static final LazySeq<?> EMPTY = new LazySeq<>(null, null);
+
+    private final T head;
+    private volatile LazySeq<T> tail;
+    // Cleared once forced, so that a forced list doesn't keep what computed it.
+    private Supplier<LazySeq<T>> thunk;
+
+    private LazySeq(T head, Supplier<LazySeq<T>> thunk) {
+        this.head = head;
+        this.thunk = thunk;
+    }
+
+    public static <T> LazySeq<T> cons(T head, Supplier<LazySeq<T>> tail) {
+        return new LazySeq<>(Objects.requireNonNull(head), Objects.requireNonNull(tail));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> LazySeq<T> empty() { return (LazySeq<T>) EMPTY; }
+
+    @SafeVarargs
+    public static <T> LazySeq<T> of(T... elements) {
+        LazySeq<T> seq = empty();
+        for (int i = elements.length - 1; i >= 0; i--) {
+            LazySeq<T> rest = seq;
+            seq = cons(elements[i], () -> rest);
+        }
+        return seq;
+    }
+
+    public static <T> LazySeq<T> iterate(T seed, UnaryOperator<T> next) {
+        return cons(seed, () -> iterate(next.apply(seed), next));
+    }
+
+    public boolean isEmpty() { return this == EMPTY; }
+
+    public T head() {
+        if (isEmpty()) { throw new NoSuchElementException("head of an empty LazySeq"); }
+        return head;
+    }
+
+    public LazySeq<T> tail() {
+        if (isEmpty()) { throw new NoSuchElementException("tail of an empty LazySeq"); }
+        LazySeq<T> forced = tail;
+        if (forced != null) { return forced; }
+        synchronized (this) {
+            forced = tail;
+            if (forced == null) {
+                forced = Objects.requireNonNull(thunk.get(), "tail");
+                tail = forced;
+                thunk = null;
+            }
+            return forced;
+        }
+    }
+
+    public LazySeq<T> filter(Predicate<? super T> p) {
+        LazySeq<T> seq = this;
+        while (!seq.isEmpty() && !p.test(seq.head)) { seq = seq.tail(); }
+        if (seq.isEmpty()) { return empty(); }
+        return cons(seq.head, seq.filterAfter(p));
+    }
+
+    // The thunk of a filter of the elements after this one: if these elements are still to be filtered by a Filter, a Filter with one more predicate.
+    private Supplier<LazySeq<T>> filterAfter(Predicate<? super T> p) {
+        synchronized (this) {
+            if (tail == null && thunk instanceof Filter<T> filter) {
+                Predicate<? super T>[] predicates = Arrays.copyOf(filter.predicates, filter.predicates.length + 1);
+                predicates[predicates.length - 1] = p;
+                return new Filter<>(filter.after, predicates);
+            }
+        }
+        // Generic arrays can't be created, so a Predicate<?>[] holding only p, which is a Predicate<? super T>.
+        @SuppressWarnings("unchecked")
+        Predicate<? super T>[] predicates = (Predicate<? super T>[]) new Predicate<?>[] { p };
+        return new Filter<>(this, predicates);
+    }
+
+    // The elements after the node after, accepted by all the predicates.
+    private record Filter<T>(LazySeq<T> after, Predicate<? super T>[] predicates) implements Supplier<LazySeq<T>> {
+        @Override
+        public LazySeq<T> get() {
+            LazySeq<T> seq = after.tail();
+            while (!seq.isEmpty() && !accepts(seq.head)) { seq = seq.tail(); }
+            return seq.isEmpty() ? empty() : new LazySeq<>(seq.head, new Filter<>(seq, predicates));
+        }
+
+        private boolean accepts(T value) {
+            for (Predicate<? super T> p : predicates) {
+                if (!p.test(value)) { return false; }
+            }
+            return true;
+        }
+    }
+
+    public <R> LazySeq<R> map(Function<? super T, ? extends R> f) {
+        if (isEmpty()) { return empty(); }
+        return cons(f.apply(head), () -> tail().map(f));
+    }
+
+    public LazySeq<T> take(long n) {
+        if (n <= 0 || isEmpty()) { return empty(); }
+        // The last element doesn't force the one after it, which a filter may search for forever.
+        if (n == 1) { return cons(head, LazySeq::empty); }
+        return cons(head, () -> tail().take(n - 1));
+    }
+
+    public T get(long index) {
+        LazySeq<T> seq = this;
+        for (long i = 0; i < index && !seq.isEmpty(); i++) { seq = seq.tail(); }
+        return seq.head();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        for (LazySeq<T> seq = this; !seq.isEmpty(); seq = seq.tail()) { action.accept(seq.head); }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private LazySeq<T> seq = LazySeq.this;
+            // Whether the head of seq was returned already: its tail is only forced when the next element is asked for.
+            private boolean returned;
+
+            @Override
+            public boolean hasNext() {
+                if (returned) {
+                    seq = seq.tail();
+                    returned = false;
+                }
+                return !seq.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) { throw new NoSuchElementException(); }
+                returned = true;
+                return seq.head;
+            }
+        };
+    }
+
+    // Forces the elements one at a time, as they are consumed; may be infinite, so better consumed sequentially.
+    @Override
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL);
+    }
+
+    public Stream<T> stream() { return StreamSupport.stream(spliterator(), false); }
+
+    // Forces the first n elements (fewer if the list is shorter) in the calling thread, then streams them from an array, which parallel streams split evenly.
+    @SuppressWarnings("unchecked")
+    public Stream<T> prefix(int n) {
+        Object[] elements = new Object[n];
+        int count = 0;
+        for (LazySeq<T> seq = this; count < n && !seq.isEmpty(); ) {
+            elements[count++] = seq.head;
+            if (count < n) { seq = seq.tail(); }
+        }
+        return (Stream<T>) Arrays.stream(elements, 0, count);
+    }
+
+    /**
+     * A LazySeq of ints. Never empty: the sequences of numbers this is for are infinite, and the filters of infinite sequences as well (as long as they accept some element further on).
+     */
+    public static final class OfInt {
+        private final int head;
+        private volatile OfInt tail;
+        private Supplier<OfInt> thunk;
+
+        private OfInt(int head, Supplier<OfInt> thunk) {
+            this.head = head;
+            this.thunk = thunk;
+        }
+
+        public static OfInt cons(int head, Supplier<OfInt> tail) { return new OfInt(head, Objects.requireNonNull(tail)); }
+
+        public static OfInt iterate(int seed, IntUnaryOperator next) {
+            return cons(seed, () -> iterate(next.applyAsInt(seed), next));
+        }
+
+        public static OfInt from(int n) { return iterate(n, i -> i + 1); }
+
+        public int head() { return head; }
+
+        public OfInt tail() {
+            OfInt forced = tail;
+            if (forced != null) { return forced; }
+            synchronized (this) {
+                forced = tail;
+                if (forced == null) {
+                    forced = Objects.requireNonNull(thunk.get(), "tail");
+                    tail = forced;
+                    thunk = null;
+                }
+                return forced;
+            }
+        }
+
+        public OfInt filter(IntPredicate p) {
+            OfInt seq = this;
+            while (!p.test(seq.head)) { seq = seq.tail(); }
+            return cons(seq.head, seq.filterAfter(p));
+        }
+
+        private Supplier<OfInt> filterAfter(IntPredicate p) {
+            synchronized (this) {
+                if (tail == null && thunk instanceof IntFilter filter) {
+                    IntPredicate[] predicates = Arrays.copyOf(filter.predicates, filter.predicates.length + 1);
+                    predicates[predicates.length - 1] = p;
+                    return new IntFilter(filter.after, predicates);
+                }
+            }
+            return new IntFilter(this, new IntPredicate[] { p });
+        }
+
+        private record IntFilter(OfInt after, IntPredicate[] predicates) implements Supplier<OfInt> {
+            @Override
+            public OfInt get() {
+                OfInt seq = after.tail();
+                while (!accepts(seq.head)) { seq = seq.tail(); }
+                return new OfInt(seq.head, new IntFilter(seq, predicates));
+            }
+
+            private boolean accepts(int value) {
+                for (IntPredicate p : predicates) {
+                    if (!p.test(value)) { return false; }
+                }
+                return true;
+            }
+        }
+
+        public OfInt map(IntUnaryOperator f) {
+            return cons(f.applyAsInt(head), () -> tail().map(f));
+        }
+
+        public int get(long index) {
+            OfInt seq = this;
+            for (long i = 0; i < index; i++) { seq = seq.tail(); }
+            return seq.head;
+        }
+
+        // Forces the first n elements, see LazySeq.prefix.
+        public IntStream prefix(int n) {
+            int[] elements = new int[n];
+            OfInt seq = this;
+            for (int i = 0; i < n; i++) {
+                elements[i] = seq.head;
+                if (i + 1 < n) { seq = seq.tail(); }
+            }
+            return Arrays.stream(elements);
+        }
+
+        public Spliterator.OfInt spliterator() {
+            // Inside the spliterator OfInt names Spliterator.OfInt.
+            LazySeq.OfInt first = this;
+            return new Spliterators.AbstractIntSpliterator(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL) {
+                private LazySeq.OfInt seq = first;
+                // As in the LazySeq iterator, the tail is forced when the next element is asked for.
+                private boolean returned;
+
+                @Override
+                public boolean tryAdvance(IntConsumer action) {
+                    if (returned) { seq = seq.tail(); }
+                    returned = true;
+                    action.accept(seq.head);
+                    return true;
+                }
+            };
+        }
+
+        public IntStream stream() { return StreamSupport.intStream(spliterator(), false); }
+    }
+
+    /**
+     * A LazySeq of longs, infinite as OfInt.
+     */
+    public static final class OfLong {
+        private final long head;
+        private volatile OfLong tail;
+        private Supplier<OfLong> thunk;
+
+        private OfLong(long head, Supplier<OfLong> thunk) {
+            this.head = head;
+            this.thunk = thunk;
+        }
+
+        public static OfLong cons(long head, Supplier<OfLong> tail) { return new OfLong(head, Objects.requireNonNull(tail)); }
+
+        public static OfLong iterate(long seed, LongUnaryOperator next) {
+            return cons(seed, () -> iterate(next.applyAsLong(seed), next));
+        }
+
+        public static OfLong from(long n) { return iterate(n, i -> i + 1); }
+
+        public long head() { return head; }
+
+        public OfLong tail() {
+            OfLong forced = tail;
+            if (forced != null) { return forced; }
+            synchronized (this) {
+                forced = tail;
+                if (forced == null) {
+                    forced = Objects.requireNonNull(thunk.get(), "tail");
+                    tail = forced;
+                    thunk = null;
+                }
+                return forced;
+            }
+        }
+
+        public OfLong filter(LongPredicate p) {
+            OfLong seq = this;
+            while (!p.test(seq.head)) { seq = seq.tail(); }
+            return cons(seq.head, seq.filterAfter(p));
+        }
+
+        private Supplier<OfLong> filterAfter(LongPredicate p) {
+            synchronized (this) {
+                if (tail == null && thunk instanceof LongFilter filter) {
+                    LongPredicate[] predicates = Arrays.copyOf(filter.predicates, filter.predicates.length + 1);
+                    predicates[predicates.length - 1] = p;
+                    return new LongFilter(filter.after, predicates);
+                }
+            }
+            return new LongFilter(this, new LongPredicate[] { p });
+        }
+
+        private record LongFilter(OfLong after, LongPredicate[] predicates) implements Supplier<OfLong> {
+            @Override
+            public OfLong get() {
+                OfLong seq = after.tail();
+                while (!accepts(seq.head)) { seq = seq.tail(); }
+                return new OfLong(seq.head, new LongFilter(seq, predicates));
+            }
+
+            private boolean accepts(long value) {
+                for (LongPredicate p : predicates) {
+                    if (!p.test(value)) { return false; }
+                }
+                return true;
+            }
+        }
+
+        public OfLong map(LongUnaryOperator f) {
+            return cons(f.applyAsLong(head), () -> tail().map(f));
+        }
+
+        public long get(long index) {
+            OfLong seq = this;
+            for (long i = 0; i < index; i++) { seq = seq.tail(); }
+            return seq.head;
+        }
+
+        // Forces the first n elements, see LazySeq.prefix.
+        public LongStream prefix(int n) {
+            long[] elements = new long[n];
+            OfLong seq = this;
+            for (int i = 0; i < n; i++) {
+                elements[i] = seq.head;
+                if (i + 1 < n) { seq = seq.tail(); }
+            }
+            return Arrays.stream(elements);
+        }
+
+        public Spliterator.OfLong spliterator() {
+            // Inside the spliterator OfLong names Spliterator.OfLong.
+            LazySeq.OfLong first = this;
+            return new Spliterators.AbstractLongSpliterator(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.IMMUTABLE | Spliterator.NONNULL) {
+                private LazySeq.OfLong seq = first;
+                // As in the LazySeq iterator, the tail is forced when the next element is asked for.
+                private boolean returned;
+
+                @Override
+                public boolean tryAdvance(LongConsumer action) {
+                    if (returned) { seq = seq.tail(); }
+                    returned = true;
+                    action.accept(seq.head);
+                    return true;
+                }
+            };
+        }
+
+        public LongStream stream() { return StreamSupport.longStream(spliterator(), false); }
+    }
+}
@@ -0,0 +1,287 @@
+package org.example.java_learning;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Memoization of pure functions, the "save instead of recompute" that referential transparency allows.
+ *  - function, biFunction: results kept in a Storage, unbounded (a ConcurrentHashMap), lru(n) (the n keys used last) or weakKeys (dropped with their keys; the values must then not refer to their keys).
+ *  - ints, longs: IntUnaryOperator and LongUnaryOperator memoized in open addressing tables of longs, so neither keys nor values are boxed. Optionally bounded: a full stripe drops its results, a coarse bound rather than LRU.
+ *  - recursive, recursiveInts, recursiveLongs: the function receives its own memoized version to call, as Fibonacci: recursiveLongs((fib, n) -> n < 2 ? n : fib.applyAsLong(n - 1) + fib.applyAsLong(n - 2)).
+ * Each key is computed once: the first thread missing a key registers it as pending and computes it outside any lock, the others needing the same key meanwhile wait for that result. ConcurrentHashMap.computeIfAbsent can't do this for recursive functions: a computation may not update its map, it throws IllegalStateException (or livelocks) instead. Here a computation may memoize other keys freely; only a key depending on itself, a cycle no memoization can compute, throws IllegalStateException.
+ * A computation throwing an exception isn't memoized, the exception goes to the thread computing and to those waiting, and the key is computed again on the next call.
+ */
+public final class Memo {
+
+    private Memo() {}
+
+    // Where results are kept, a map of keys to pending results.
+    public static final class Storage {
+        private final Supplier<Map<Object, Pending<Object>>> maps;
+
+        private Storage(Supplier<Map<Object, Pending<Object>>> maps) { this.maps = maps; }
+
+        public static Storage unbounded() { return new Storage(ConcurrentHashMap::new); }
+
+        public static Storage lru(int maxSize) {
+            if (maxSize < 1) { throw new IllegalArgumentException("maxSize must be positive: " + maxSize); }
+            return new Storage(() -> Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Pending<Object>> eldest) { return size() > maxSize; }
+            }));
+        }
+
+        public static Storage weakKeys() { return new Storage(() -> Collections.synchronizedMap(new WeakHashMap<>())); }
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private <K, V> Map<K, Pending<V>> newMap() { return (Map) maps.get(); }
+    }
+
+    // The result of a key, complete once computed by owner. owner is cleared then, as LongTable clears owners[slot], so that a cache doesn't keep every thread that ever computed an entry (and its thread locals). Only the owner itself clears it and compares it with itself, so a plain field is enough.
+    private static final class Pending<V> extends CompletableFuture<V> {
+        Thread owner = Thread.currentThread();
+    }
+
+    public static <T, R> Function<T, R> function(Function<? super T, ? extends R> f) { return function(f, Storage.unbounded()); }
+
+    public static <T, R> Function<T, R> function(Function<? super T, ? extends R> f, Storage storage) {
+        Map<T, Pending<R>> results = storage.newMap();
+        return t -> load(results, t, f);
+    }
+
+    public static <T, U, R> BiFunction<T, U, R> biFunction(BiFunction<? super T, ? super U, ? extends R> f, Storage storage) {
+        Map<Arguments<T, U>, Pending<R>> results = storage.newMap();
+        Function<Arguments<T, U>, R> compute = arguments -> f.apply(arguments.first(), arguments.second());
+        return (t, u) -> load(results, new Arguments<>(t, u), compute);
+    }
+
+    private record Arguments<T, U>(T first, U second) {}
+
+    public static <T, R> Function<T, R> recursive(BiFunction<Function<T, R>, T, R> f, Storage storage) {
+        Map<T, Pending<R>> results = storage.newMap();
+        return new Function<>() {
+            private final Function<T, R> compute = t -> f.apply(this, t);
+
+            @Override
+            public R apply(T t) { return load(results, t, compute); }
+        };
+    }
+
+    private static <K, V> V load(Map<K, Pending<V>> results, K key, Function<? super K, ? extends V> f) {
+        Pending<V> pending = results.get(key);
+        if (pending == null) {
+            Pending<V> mine = new Pending<>();
+            pending = results.putIfAbsent(key, mine);
+            if (pending == null) {
+                try {
+                    V value = f.apply(key);
+                    mine.owner = null;
+                    mine.complete(value);
+                    return value;
+                } catch (Throwable e) {
+                    mine.owner = null;
+                    results.remove(key, mine);
+                    mine.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        if (!pending.isDone() && pending.owner == Thread.currentThread()) {
+            throw new IllegalStateException("Recursive memoization depends on itself for " + key);
+        }
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) { throw cause; }
+            if (e.getCause() instanceof Error cause) { throw cause; }
+            throw e;
+        }
+    }
+
+    // Primitive variants.
+
+    @FunctionalInterface
+    public interface IntRecursion {
+        int apply(IntUnaryOperator self, int n);
+    }
+
+    @FunctionalInterface
+    public interface LongRecursion {
+        long apply(LongUnaryOperator self, long n);
+    }
+
+    public static IntUnaryOperator ints(IntUnaryOperator f) { return ints(f, Integer.MAX_VALUE); }
+
+    public static IntUnaryOperator ints(IntUnaryOperator f, int maxSize) {
+        LongTable table = new LongTable(maxSize);
+        LongUnaryOperator compute = key -> f.applyAsInt((int) key);
+        return n -> (int) table.load(n, compute);
+    }
+
+    public static LongUnaryOperator longs(LongUnaryOperator f) { return longs(f, Integer.MAX_VALUE); }
+
+    public static LongUnaryOperator longs(LongUnaryOperator f, int maxSize) {
+        LongTable table = new LongTable(maxSize);
+        return n -> table.load(n, f);
+    }
+
+    public static IntUnaryOperator recursiveInts(IntRecursion f) {
+        LongTable table = new LongTable(Integer.MAX_VALUE);
+        return new IntUnaryOperator() {
+            private final LongUnaryOperator compute = key -> f.apply(this, (int) key);
+
+            @Override
+            public int applyAsInt(int n) { return (int) table.load(n, compute); }
+        };
+    }
+
+    public static LongUnaryOperator recursiveLongs(LongRecursion f) {
+        LongTable table = new LongTable(Integer.MAX_VALUE);
+        return new LongUnaryOperator() {
+            private final LongUnaryOperator compute = key -> f.apply(this, key);
+
+            @Override
+            public long applyAsLong(long n) { return table.load(n, compute); }
+        };
+    }
+
+    /**
+     * long to long results, in STRIPES open addressing tables (linear probing) each guarded by its own monitor, as the stripes of EmployeeRegistry.
+     * A slot is FREE, PENDING (being computed by owners[slot]), DONE or REMOVED (a failed computation, skipped by lookups and reused by inserts).
+     */
+    private static final class LongTable {
+        private static final int STRIPE_BITS = 4;
+        private static final int STRIPES = 1 << STRIPE_BITS;
+        private static final byte FREE = 0;
+        private static final byte PENDING = 1;
+        private static final byte DONE = 2;
+        private static final byte REMOVED = 3;
+
+        private final Stripe[] stripes = new Stripe[STRIPES];
+        private final int maxStripeSize;
+
+        LongTable(int maxSize) {
+            if (maxSize < 1) { throw new IllegalArgumentException("maxSize must be positive: " + maxSize); }
+            maxStripeSize = maxSize == Integer.MAX_VALUE ? Integer.MAX_VALUE : Math.max(1, maxSize / STRIPES);
+            for (int i = 0; i < STRIPES; i++) { stripes[i] = new Stripe(); }
+        }
+
+        long load(long key, LongUnaryOperator f) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            Stripe stripe = stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+            int start = (int) (hash ^ (hash >>> 32));
+            boolean interrupted = false;
+            synchronized (stripe) {
+                try {
+                    while (true) {
+                        int slot = stripe.find(key, start);
+                        if (slot < 0) {
+                            stripe.insertPending(key, start, maxStripeSize);
+                            break;
+                        }
+                        if (stripe.states[slot] == DONE) { return stripe.values[slot]; }
+                        if (stripe.owners[slot] == Thread.currentThread()) {
+                            throw new IllegalStateException("Recursive memoization depends on itself for " + key);
+                        }
+                        try {
+                            stripe.wait();
+                        } catch (InterruptedException e) {
+                            // Waiting as CompletableFuture.join, uninterruptibly.
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    if (interrupted) { Thread.currentThread().interrupt(); }
+                }
+            }
+            long value;
+            try {
+                value = f.applyAsLong(key);
+            } catch (Throwable e) {
+                synchronized (stripe) { stripe.finish(key, start, REMOVED, 0); }
+                throw e;
+            }
+            synchronized (stripe) { stripe.finish(key, start, DONE, value); }
+            return value;
+        }
+
+        private static final class Stripe {
+            long[] keys = new long[16];
+            long[] values = new long[16];
+            byte[] states = new byte[16];
+            Thread[] owners = new Thread[16];
+            // Slots not FREE, and DONE ones.
+            int used;
+            int done;
+
+            int find(long key, int start) {
+                int mask = keys.length - 1;
+                for (int i = start & mask; states[i] != FREE; i = (i + 1) & mask) {
+                    if (states[i] != REMOVED && keys[i] == key) { return i; }
+                }
+                return -1;
+            }
+
+            void insertPending(long key, int start, int maxSize) {
+                if (done >= maxSize) {
+                    // Bounded and full: keeps only what is being computed.
+                    done = 0;
+                    rehash(keys.length, PENDING);
+                }
+                if ((used + 1) * 2 > keys.length) { rehash(keys.length * 2, (byte) -1); }
+                int mask = keys.length - 1;
+                int i = start & mask;
+                while (states[i] == PENDING || states[i] == DONE) { i = (i + 1) & mask; }
+                if (states[i] == FREE) { used++; }
+                keys[i] = key;
+                states[i] = PENDING;
+                owners[i] = Thread.currentThread();
+            }
+
+            void finish(long key, int start, byte state, long value) {
+                int slot = find(key, start);
+                states[slot] = state;
+                values[slot] = value;
+                owners[slot] = null;
+                if (state == DONE) { done++; }
+                notifyAll();
+            }
+
+            // Reinserts the PENDING and DONE slots, or only those in state keep if keep isn't -1, dropping the REMOVED ones.
+            private void rehash(int capacity, byte keep) {
+                long[] oldKeys = keys;
+                long[] oldValues = values;
+                byte[] oldStates = states;
+                Thread[] oldOwners = owners;
+                keys = new long[capacity];
+                values = new long[capacity];
+                states = new byte[capacity];
+                owners = new Thread[capacity];
+                used = 0;
+                int mask = capacity - 1;
+                for (int j = 0; j < oldKeys.length; j++) {
+                    byte state = oldStates[j];
+                    if (state == FREE || state == REMOVED || (keep != -1 && state != keep)) { continue; }
+                    long hash = oldKeys[j] * 0x9E3779B97F4A7C15L;
+                    int i = (int) (hash ^ (hash >>> 32)) & mask;
+                    while (states[i] != FREE) { i = (i + 1) & mask; }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                    states[i] = state;
+                    owners[i] = oldOwners[j];
+                    used++;
+                }
+            }
+        }
+    }
+}
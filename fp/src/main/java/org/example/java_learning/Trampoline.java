@@ -0,0 +1,121 @@
+package org.example.java_learning;
+
+import java.util.ArrayDeque;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Recursion in constant stack space, for the recursive definitions Java doesn't eliminate the calls of.
+ * A Trampoline is a step of a computation: either done with a value, or more computation to do, given as a Supplier of the next step instead of a call. run() bounces from step to step in a loop, so the stack doesn't grow whatever the depth:
+ *   static Trampoline<Long> factorial(long acc, long n) { return n == 1 ? done(acc) : more(() -> factorial(acc * n, n - 1)); }
+ * Recursion that does something with the result of its recursive call, as functionalAppend building a node around it, isn't a tail call: flatMap (and map) says what to do with the result, run() keeping these continuations on a heap stack.
+ * A step costs a Supplier and a Trampoline. For a direct tail call, a function calling only itself with new arguments, tailRecursive needs neither: the body calls self.call(new arguments) instead of itself, which only stores the arguments in a reused frame, and the loop of tailRecursive calls the body again with them. A recursion of depth 10^7 then allocates one frame in all, and runs about as fast as the loop written by hand (see TrampolineBenchmark in streams_benchmarks).
+ */
+public sealed interface Trampoline<T> {
+
+    record Done<T>(T value) implements Trampoline<T> {}
+
+    record More<T>(Supplier<Trampoline<T>> next) implements Trampoline<T> {}
+
+    record FlatMap<A, T>(Trampoline<A> source, Function<? super A, Trampoline<T>> continuation) implements Trampoline<T> {}
+
+    static <T> Trampoline<T> done(T value) { return new Done<>(value); }
+
+    static <T> Trampoline<T> more(Supplier<Trampoline<T>> next) { return new More<>(next); }
+
+    default <R> Trampoline<R> flatMap(Function<? super T, Trampoline<R>> continuation) { return new FlatMap<>(this, continuation); }
+
+    default <R> Trampoline<R> map(Function<? super T, ? extends R> f) { return flatMap(value -> done(f.apply(value))); }
+
+    @SuppressWarnings("unchecked")
+    default T run() {
+        ArrayDeque<Function<Object, Trampoline<?>>> continuations = new ArrayDeque<>();
+        Trampoline<?> step = this;
+        while (true) {
+            switch (step) {
+                case Done<?> done -> {
+                    if (continuations.isEmpty()) { return (T) done.value(); }
+                    step = continuations.pop().apply(done.value());
+                }
+                case More<?> more -> step = more.next().get();
+                case FlatMap<?, ?> flatMap -> {
+                    continuations.push((Function<Object, Trampoline<?>>) flatMap.continuation());
+                    step = flatMap.source();
+                }
+            }
+        }
+    }
+
+    // Direct tail calls without a thunk per step.
+
+    // A function of one argument calling itself in tail position as self.call(next argument).
+    @FunctionalInterface
+    interface TailRecursion<A, R> {
+        R apply(A argument, TailCall<A, R> self);
+    }
+
+    // A function of two longs (as factorialHelper's accumulator and counter) calling itself in tail position as self.call(a, b).
+    @FunctionalInterface
+    interface LongTailRecursion {
+        long apply(long a, long b, LongTailCall self);
+    }
+
+    // The frame of a TailRecursion: call stores the argument of the next round and returns a placeholder, which the body must return as it is.
+    final class TailCall<A, R> {
+        private A argument;
+        private boolean pending;
+
+        private TailCall() {}
+
+        public R call(A next) {
+            if (pending) { throw new IllegalStateException("More than one tail call in a round"); }
+            argument = next;
+            pending = true;
+            return null;
+        }
+    }
+
+    final class LongTailCall {
+        private long a;
+        private long b;
+        private boolean pending;
+
+        private LongTailCall() {}
+
+        public long call(long nextA, long nextB) {
+            if (pending) { throw new IllegalStateException("More than one tail call in a round"); }
+            a = nextA;
+            b = nextB;
+            pending = true;
+            return 0;
+        }
+    }
+
+    static <A, R> Function<A, R> tailRecursive(TailRecursion<A, R> body) {
+        return argument -> {
+            TailCall<A, R> self = new TailCall<>();
+            self.argument = argument;
+            R result;
+            do {
+                self.pending = false;
+                result = body.apply(self.argument, self);
+            } while (self.pending);
+            return result;
+        };
+    }
+
+    static LongBinaryOperator tailRecursive(LongTailRecursion body) {
+        return (a, b) -> {
+            LongTailCall self = new LongTailCall();
+            self.a = a;
+            self.b = b;
+            long result;
+            do {
+                self.pending = false;
+                result = body.apply(self.a, self.b, self);
+            } while (self.pending);
+            return result;
+        };
+    }
+}
@@ -0,0 +1,342 @@
+package org.example.java_learning;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+import org.example.java_learning.LambdasIntro.Predicate;
+
+/**
+ * Apples indexed for filtering, where LambdasIntro.filterApples tests the predicate on every apple of the list and copies the matches in a new ArrayList.
+ *  - Indexes: one bitmap per Color (bit i set if apple i has that color) and the positions of the apples sorted by weight, with their weights in a sorted int[].
+ *  - Queries are Predicates made with color, heavierThan, lighterThan, weightBetween, and, or and negate. filter recognizes them and plans them as index operations: a color is its bitmap, a weight range a binary search then the positions in that range (or a pass over the weight column when the range is wide), and is evaluated from its most selective part, the others only testing the apples that part kept.
+ *  - Any other Predicate (a lambda, a method reference) is opaque: tested apple by apple, on the apples kept by the indexed parts of an and if any, on all apples otherwise.
+ *  - Results are views: a bitmap of the matching positions, read as a List of apples without copying them; size counts the bits, get(i) finds the i-th bit with a rank table built at the first get.
+ * The inventory is a snapshot: apples changing weight or color after being indexed are found by their old weight and color. Queries may run concurrently, each Result being read by one thread.
+ */
+public final class AppleInventory {
+
+    private static final Color[] COLORS = Color.values();
+
+    private final Apple[] apples;
+    private final int[] weights;
+    private final long[][] colorBits;
+    private final int[] colorCounts;
+    // Positions sorted by weight, and their weights.
+    private final int[] byWeight;
+    private final int[] sortedWeights;
+
+    public AppleInventory(List<Apple> inventory) {
+        int n = inventory.size();
+        apples = inventory.toArray(new Apple[0]);
+        weights = new int[n];
+        colorBits = new long[COLORS.length][words(n)];
+        colorCounts = new int[COLORS.length];
+        // Weight and position packed in a long, so that the sort compares primitives.
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            Apple apple = apples[i];
+            weights[i] = apple.getWeight();
+            int color = apple.getColor().ordinal();
+            colorBits[color][i >>> 6] |= 1L << i;
+            colorCounts[color]++;
+            keys[i] = (long) weights[i] << 32 | i;
+        }
+        Arrays.parallelSort(keys);
+        byWeight = new int[n];
+        sortedWeights = new int[n];
+        for (int i = 0; i < n; i++) {
+            byWeight[i] = (int) keys[i];
+            sortedWeights[i] = (int) (keys[i] >> 32);
+        }
+    }
+
+    public int size() { return apples.length; }
+
+    public Result filter(Predicate<Apple> p) {
+        Query query = p instanceof Query q ? q : new Matching(p);
+        return new Result(apples, evaluate(query, null));
+    }
+
+    public int count(Predicate<Apple> p) { return filter(p).size(); }
+
+    /**
+     * A predicate filter can plan. Being Predicates, queries also work where any Predicate does, as filterApples(List, Predicate), testing apples one by one.
+     */
+    public sealed interface Query extends Predicate<Apple> permits ColorIs, WeightBetween, And, Or, Not, Matching {
+        default Query and(Predicate<Apple> other) { return new And(this, query(other)); }
+
+        default Query or(Predicate<Apple> other) { return new Or(this, query(other)); }
+
+        default Query negate() { return new Not(this); }
+    }
+
+    public static Query color(Color color) { return new ColorIs(color); }
+
+    public static Query heavierThan(int weight) { return weight == Integer.MAX_VALUE ? new Not(weightBetween(Integer.MIN_VALUE, weight)) : new WeightBetween(weight + 1, Integer.MAX_VALUE); }
+
+    public static Query lighterThan(int weight) { return weight == Integer.MIN_VALUE ? new Not(weightBetween(weight, Integer.MAX_VALUE)) : new WeightBetween(Integer.MIN_VALUE, weight - 1); }
+
+    // Both bounds included.
+    public static Query weightBetween(int min, int max) { return new WeightBetween(min, max); }
+
+    // An opaque predicate, to combine with the others.
+    public static Query matching(Predicate<Apple> p) { return query(p); }
+
+    private static Query query(Predicate<Apple> p) { return p instanceof Query q ? q : new Matching(p); }
+
+    record ColorIs(Color color) implements Query {
+        @Override
+        public boolean test(Apple apple) { return apple.getColor() == color; }
+    }
+
+    record WeightBetween(int min, int max) implements Query {
+        @Override
+        public boolean test(Apple apple) { return apple.getWeight() >= min && apple.getWeight() <= max; }
+    }
+
+    record And(Query left, Query right) implements Query {
+        @Override
+        public boolean test(Apple apple) { return left.test(apple) && right.test(apple); }
+    }
+
+    record Or(Query left, Query right) implements Query {
+        @Override
+        public boolean test(Apple apple) { return left.test(apple) || right.test(apple); }
+    }
+
+    record Not(Query query) implements Query {
+        @Override
+        public boolean test(Apple apple) { return !query.test(apple); }
+    }
+
+    record Matching(Predicate<Apple> p) implements Query {
+        @Override
+        public boolean test(Apple apple) { return p.test(apple); }
+    }
+
+    // A new bitmap of the apples matching query among candidates (all apples if null); candidates isn't modified.
+    private long[] evaluate(Query query, long[] candidates) {
+        return switch (query) {
+            case ColorIs c -> and(colorBits[c.color().ordinal()].clone(), candidates);
+            case WeightBetween w -> weightBetween(w.min(), w.max(), candidates);
+            case And a -> evaluateAnd(a, candidates);
+            case Or o -> evaluateOr(o, candidates);
+            case Not n -> andNot(candidates == null ? all() : candidates.clone(), evaluate(n.query(), candidates));
+            case Matching m -> scan(m.p(), candidates);
+        };
+    }
+
+    // The terms of a chain of ands, from the most selective, each evaluated among the apples the previous ones kept.
+    private long[] evaluateAnd(And and, long[] candidates) {
+        List<Query> terms = new ArrayList<>();
+        flatten(and, terms);
+        terms.sort(Comparator.comparingLong(this::estimate));
+        long[] bits = candidates;
+        for (Query term : terms) {
+            bits = evaluate(term, bits);
+            if (isEmpty(bits)) { break; }
+        }
+        return bits;
+    }
+
+    // The right side only tests the candidates the left side didn't match, as Or.test does: a guard on the left keeps an opaque right side from seeing the apples it matched.
+    private long[] evaluateOr(Or or, long[] candidates) {
+        long[] left = evaluate(or.left(), candidates);
+        long[] rest = andNot(candidates == null ? all() : candidates.clone(), left);
+        return or(left, evaluate(or.right(), rest));
+    }
+
+    private static void flatten(Query query, List<Query> terms) {
+        if (query instanceof And(Query left, Query right)) {
+            flatten(left, terms);
+            flatten(right, terms);
+        } else {
+            terms.add(query);
+        }
+    }
+
+    // The number of apples a query may match, from the indexes; opaque predicates come last.
+    private long estimate(Query query) {
+        int n = apples.length;
+        return switch (query) {
+            case ColorIs c -> colorCounts[c.color().ordinal()];
+            case WeightBetween w -> Math.max(0, upperBound(w.max()) - lowerBound(w.min()));
+            case And a -> Math.min(estimate(a.left()), estimate(a.right()));
+            case Or o -> Math.min(n, estimate(o.left()) + estimate(o.right()));
+            case Not x -> n - (x.query() instanceof Matching ? 0 : estimate(x.query()));
+            case Matching m -> n + 1L;
+        };
+    }
+
+    private long[] weightBetween(int min, int max, long[] candidates) {
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        long[] bits = new long[words(apples.length)];
+        if (to - from < apples.length / 8) {
+            // A narrow range: only its positions.
+            for (int i = from; i < to; i++) { bits[byWeight[i] >>> 6] |= 1L << byWeight[i]; }
+            return and(bits, candidates);
+        }
+        // A wide range: a pass over the weight column, a word of bits at a time, without branches.
+        for (int w = 0; w < bits.length; w++) {
+            int base = w << 6;
+            int end = Math.min(64, weights.length - base);
+            long word = 0;
+            for (int b = 0; b < end; b++) {
+                int weight = weights[base + b];
+                word |= (weight >= min & weight <= max ? 1L : 0L) << b;
+            }
+            bits[w] = word;
+        }
+        return and(bits, candidates);
+    }
+
+    private long[] scan(Predicate<Apple> p, long[] candidates) {
+        long[] bits = candidates == null ? all() : candidates.clone();
+        for (int w = 0; w < bits.length; w++) {
+            for (long word = bits[w]; word != 0; word &= word - 1) {
+                int bit = Long.numberOfTrailingZeros(word);
+                if (!p.test(apples[w << 6 | bit])) { bits[w] &= ~(1L << bit); }
+            }
+        }
+        return bits;
+    }
+
+    // The first position in sortedWeights of a weight >= min, and of a weight > max.
+    private int lowerBound(int min) {
+        int low = 0;
+        int high = sortedWeights.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedWeights[middle] < min) { low = middle + 1; } else { high = middle; }
+        }
+        return low;
+    }
+
+    private int upperBound(int max) {
+        int low = 0;
+        int high = sortedWeights.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedWeights[middle] <= max) { low = middle + 1; } else { high = middle; }
+        }
+        return low;
+    }
+
+    private long[] all() {
+        int n = apples.length;
+        long[] bits = new long[words(n)];
+        Arrays.fill(bits, -1L);
+        if ((n & 63) != 0) { bits[bits.length - 1] = (1L << n) - 1; }
+        return bits;
+    }
+
+    private static int words(int n) { return (n + 63) >>> 6; }
+
+    private static long[] and(long[] bits, long[] other) {
+        if (other != null) {
+            for (int i = 0; i < bits.length; i++) { bits[i] &= other[i]; }
+        }
+        return bits;
+    }
+
+    private static long[] or(long[] bits, long[] other) {
+        for (int i = 0; i < bits.length; i++) { bits[i] |= other[i]; }
+        return bits;
+    }
+
+    private static long[] andNot(long[] bits, long[] other) {
+        for (int i = 0; i < bits.length; i++) { bits[i] &= ~other[i]; }
+        return bits;
+    }
+
+    private static boolean isEmpty(long[] bits) {
+        for (long word : bits) {
+            if (word != 0) { return false; }
+        }
+        return true;
+    }
+
+    /**
+     * The apples matching a query, in inventory order, as an unmodifiable List over the bitmap of their positions.
+     */
+    public static final class Result extends AbstractList<Apple> {
+        private final Apple[] apples;
+        private final long[] bits;
+        private int size = -1;
+        // Matches before each word, built by the first get.
+        private int[] ranks;
+
+        private Result(Apple[] apples, long[] bits) {
+            this.apples = apples;
+            this.bits = bits;
+        }
+
+        @Override
+        public int size() {
+            int s = size;
+            if (s < 0) {
+                s = 0;
+                for (long word : bits) { s += Long.bitCount(word); }
+                size = s;
+            }
+            return s;
+        }
+
+        @Override
+        public Apple get(int index) {
+            if (index < 0 || index >= size()) { throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size()); }
+            int[] r = ranks;
+            if (r == null) {
+                r = new int[bits.length];
+                for (int w = 1; w < bits.length; w++) { r[w] = r[w - 1] + Long.bitCount(bits[w - 1]); }
+                ranks = r;
+            }
+            // The last word with fewer matches before it than index + 1, then the right bit in it.
+            int low = 0;
+            int high = r.length - 1;
+            while (low < high) {
+                int middle = (low + high + 1) >>> 1;
+                if (r[middle] <= index) { low = middle; } else { high = middle - 1; }
+            }
+            long word = bits[low];
+            for (int skip = index - r[low]; skip > 0; skip--) { word &= word - 1; }
+            return apples[low << 6 | Long.numberOfTrailingZeros(word)];
+        }
+
+        @Override
+        public Iterator<Apple> iterator() {
+            return new Iterator<>() {
+                private int w = 0;
+                private long word = bits.length == 0 ? 0 : bits[0];
+
+                @Override
+                public boolean hasNext() {
+                    while (word == 0 && w + 1 < bits.length) { word = bits[++w]; }
+                    return word != 0;
+                }
+
+                @Override
+                public Apple next() {
+                    if (!hasNext()) { throw new NoSuchElementException(); }
+                    Apple apple = apples[w << 6 | Long.numberOfTrailingZeros(word)];
+                    word &= word - 1;
+                    return apple;
+                }
+            };
+        }
+
+        @Override
+        public void forEach(Consumer<? super Apple> action) {
+            for (int w = 0; w < bits.length; w++) {
+                for (long word = bits[w]; word != 0; word &= word - 1) { action.accept(apples[w << 6 | Long.numberOfTrailingZeros(word)]); }
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package org.example.java_learning;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Numerical integration of a DoubleUnaryOperator, the engine behind LambdasAndMathematics.integrate, which computes a single trapezium.
+ *  - trapezoid, simpson: composite rules over n subintervals, exact for straight lines (trapezoid) and for polynomials up to degree 3 (Simpson), with an error falling as 1/n^2 and 1/n^4 for smooth functions.
+ *  - simpsonWithError: Simpson with n (rounded up to a multiple of 4) and with n / 2 subintervals, the difference estimating the error (Richardson), returned with the value.
+ *  - adaptiveSimpson: splits only the subintervals where the function is hard to integrate, until each meets its share of the tolerance.
+ *  - parallelTrapezoid, parallelSimpson: the samples split among the tasks of the common ForkJoinPool, about TASKS_PER_THREAD tasks per thread of whole CHUNKs each, enough to balance the load without paying a task per few thousand samples.
+ * Samples are computed a CHUNK at a time into a double[], then summed in a separate loop with four accumulators: the loop calling f runs without a dependency on the sum, and the sum loop reads a primitive array. Nothing is boxed, unlike integrate(Function<Double, Double>, ...) which boxes every argument and result.
+ */
+public final class Integrator {
+
+    // Samples per chunk: 128 KB of doubles, within the L2 cache of most cores.
+    static final int CHUNK = 1 << 14;
+    // Splits of adaptiveSimpson, where functions with singularities stop converging.
+    private static final int MAX_DEPTH = 50;
+    private static final int TASKS_PER_THREAD = 8;
+
+    public record Result(double value, double error, long evaluations) {}
+
+    private Integrator() {}
+
+    public static double trapezoid(DoubleUnaryOperator f, double a, double b, int n) {
+        checkIntervals(n);
+        double h = (b - a) / n;
+        return h * ((f.applyAsDouble(a) + f.applyAsDouble(b)) / 2 + sum(f, a, h, 1, n, false));
+    }
+
+    public static double simpson(DoubleUnaryOperator f, double a, double b, int n) {
+        n = even(n);
+        double h = (b - a) / n;
+        return h / 3 * (f.applyAsDouble(a) + f.applyAsDouble(b) + sum(f, a, h, 1, n, true));
+    }
+
+    public static double parallelTrapezoid(DoubleUnaryOperator f, double a, double b, int n) {
+        checkIntervals(n);
+        double h = (b - a) / n;
+        return h * ((f.applyAsDouble(a) + f.applyAsDouble(b)) / 2 + ForkJoinPool.commonPool().invoke(new Sum(f, a, h, 1, n, false, leafSize(n))));
+    }
+
+    public static double parallelSimpson(DoubleUnaryOperator f, double a, double b, int n) {
+        n = even(n);
+        double h = (b - a) / n;
+        return h / 3 * (f.applyAsDouble(a) + f.applyAsDouble(b) + ForkJoinPool.commonPool().invoke(new Sum(f, a, h, 1, n, true, leafSize(n))));
+    }
+
+    public static Result simpsonWithError(DoubleUnaryOperator f, double a, double b, int n) {
+        checkIntervals(n);
+        // A multiple of 4, so that n / 2 is even too and the coarse rule really has half the subintervals (with n = 2 both rules would be the same, the error 0).
+        n = (n + 3) & ~3;
+        if (n <= 0) { throw new IllegalArgumentException("Too many subintervals"); }
+        double fine = simpson(f, a, b, n);
+        double coarse = simpson(f, a, b, n / 2);
+        return new Result(fine, Math.abs(fine - coarse) / 15, n + 1 + n / 2 + 1);
+    }
+
+    /**
+     * Adaptive Simpson: an interval whose Simpson estimate differs from the sum of the estimates of its halves by more than 15 times its tolerance is split, each half getting half of the tolerance. The error is the sum of the error estimates of the accepted intervals.
+     * Intervals wait on a stack instead of in recursive calls, with the samples already computed, so each point is evaluated once.
+     */
+    public static Result adaptiveSimpson(DoubleUnaryOperator f, double a, double b, double tolerance) {
+        // A tolerance of 0 (or NaN) is never met, and every interval would be split down to MAX_DEPTH: about 2^50 evaluations.
+        if (!(tolerance > 0)) { throw new IllegalArgumentException("Tolerance not positive: " + tolerance); }
+        record Interval(double a, double b, double fa, double fm, double fb, double whole, double tolerance, int depth) {}
+        double fa = f.applyAsDouble(a);
+        double fb = f.applyAsDouble(b);
+        double fm = f.applyAsDouble((a + b) / 2);
+        long evaluations = 3;
+        double value = 0;
+        double error = 0;
+        ArrayDeque<Interval> intervals = new ArrayDeque<>();
+        intervals.push(new Interval(a, b, fa, fm, fb, (b - a) / 6 * (fa + 4 * fm + fb), tolerance, 0));
+        while (!intervals.isEmpty()) {
+            Interval interval = intervals.pop();
+            double m = (interval.a() + interval.b()) / 2;
+            double leftMiddle = f.applyAsDouble((interval.a() + m) / 2);
+            double rightMiddle = f.applyAsDouble((m + interval.b()) / 2);
+            evaluations += 2;
+            double left = (m - interval.a()) / 6 * (interval.fa() + 4 * leftMiddle + interval.fm());
+            double right = (interval.b() - m) / 6 * (interval.fm() + 4 * rightMiddle + interval.fb());
+            double difference = left + right - interval.whole();
+            if (Math.abs(difference) <= 15 * interval.tolerance() || interval.depth() == MAX_DEPTH) {
+                // Richardson extrapolation, exact for polynomials up to degree 5.
+                value += left + right + difference / 15;
+                error += Math.abs(difference) / 15;
+            } else {
+                intervals.push(new Interval(m, interval.b(), interval.fm(), rightMiddle, interval.fb(), right, interval.tolerance() / 2, interval.depth() + 1));
+                intervals.push(new Interval(interval.a(), m, interval.fa(), leftMiddle, interval.fm(), left, interval.tolerance() / 2, interval.depth() + 1));
+            }
+        }
+        return new Result(value, error, evaluations);
+    }
+
+    // The weighted sum of the samples from to to - 1 (the inner points): weight 1 for the trapezoid rule, 4 and 2 alternately for Simpson.
+    private static double sum(DoubleUnaryOperator f, double a, double h, int from, int to, boolean simpson) {
+        double[] samples = new double[Math.min(CHUNK, to - from)];
+        double sum = 0;
+        for (int start = from; start < to; start += CHUNK) {
+            int length = Math.min(CHUNK, to - start);
+            // x computed from the index, not by adding h repeatedly, which would accumulate rounding errors.
+            for (int i = 0; i < length; i++) { samples[i] = f.applyAsDouble(a + (start + i) * h); }
+            sum += simpson ? simpsonSum(samples, length, (start & 1) == 1) : plainSum(samples, length);
+        }
+        return sum;
+    }
+
+    private static double plainSum(double[] samples, int length) {
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            s0 += samples[i];
+            s1 += samples[i + 1];
+            s2 += samples[i + 2];
+            s3 += samples[i + 3];
+        }
+        for (; i < length; i++) { s0 += samples[i]; }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    // firstOdd: whether samples[0] is an odd point, of weight 4.
+    private static double simpsonSum(double[] samples, int length, boolean firstOdd) {
+        double even0 = 0, even1 = 0, odd0 = 0, odd1 = 0;
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            even0 += samples[i];
+            odd0 += samples[i + 1];
+            even1 += samples[i + 2];
+            odd1 += samples[i + 3];
+        }
+        for (; i < length; i++) {
+            if ((i & 1) == 0) { even0 += samples[i]; } else { odd0 += samples[i]; }
+        }
+        double first = even0 + even1;
+        double second = odd0 + odd1;
+        return firstOdd ? 4 * first + 2 * second : 2 * first + 4 * second;
+    }
+
+    // Samples per task, a multiple of CHUNK.
+    private static int leafSize(int n) {
+        int tasks = ForkJoinPool.getCommonPoolParallelism() * TASKS_PER_THREAD;
+        return Math.max(1, n / tasks / CHUNK) * CHUNK;
+    }
+
+    private static final class Sum extends RecursiveTask<Double> {
+        private final DoubleUnaryOperator f;
+        private final double a;
+        private final double h;
+        private final int from;
+        private final int to;
+        private final boolean simpson;
+        private final int leafSize;
+
+        Sum(DoubleUnaryOperator f, double a, double h, int from, int to, boolean simpson, int leafSize) {
+            this.f = f;
+            this.a = a;
+            this.h = h;
+            this.from = from;
+            this.to = to;
+            this.simpson = simpson;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Double compute() {
+            if (to - from <= leafSize) { return sum(f, a, h, from, to, simpson); }
+            // Split on a chunk boundary, at least one chunk on the left.
+            int middle = from + Math.max(1, (to - from) / 2 / CHUNK) * CHUNK;
+            Sum right = new Sum(f, a, h, middle, to, simpson, leafSize);
+            right.fork();
+            double left = new Sum(f, a, h, from, middle, simpson, leafSize).compute();
+            return left + right.join();
+        }
+    }
+
+    private static int even(int n) {
+        checkIntervals(n);
+        return n == 1 ? 2 : n + (n & 1);
+    }
+
+    private static void checkIntervals(int n) {
+        if (n < 1) { throw new IllegalArgumentException("At least one subinterval: " + n); }
+    }
+}
@@ -615,6 +615,17 @@ No need to write a lot of boilerplate like you do for anonymous classes:
             Comparator<Apple> comparator = Comparator.comparing((Apple a) -> a.getWeight());
             inventory.sort(comparator);
         }
+        // comparing(Apple::getWeight) boxes the two weights it compares (Integer is the Comparable key), and each Apple is an object reached through a reference. A FruitStore keeps the weights, colors and kinds of the fruit in primitive columns and sorts them by primitive keys, with a radix sort of an index permutation, no Comparator and no object per fruit:
+        public static void testFruitStore() {
+            FruitStore store = new FruitStore();
+            inventory.forEach(store::add);
+            store.add(new Orange(120, Color.GREEN));
+            System.out.println(Arrays.toString(store.sortedIndex(FruitStore.IntKey.WEIGHT.reversed())));
+            // Prints: [1, 2, 3, 0]
+            store.sort(FruitStore.IntKey.WEIGHT, FruitStore.IntKey.COLOR);
+            System.out.println(store);
+            // Prints: [Apple{color=GREEN, weight=80}, Apple{color=RED, weight=120}, Orange{color=GREEN, weight=120}, Apple{color=GREEN, weight=155}]
+        }
     }
     //
     /**
@@ -704,6 +715,41 @@ No need to write a lot of boilerplate like you do for anonymous classes:
             System.out.println(integrate((DoubleFunction)(double x) -> x + 10, 3, 7));
             System.out.println(integrate((double x) -> x + 10, 3, 7));
         }
+    /*
+    A single trapezium is exact only for straight lines. For other functions, the composite trapezium rule cuts [a, b] in n strips of width h = (b - a) / n, each a trapezium, the error falling as 1/n^2:
+        h × (f(a)/2 + f(a + h) + f(a + 2h) + ... + f(b - h) + f(b)/2)
+    Here every sample goes through the functional interface, so the boxing cost of each overload is paid n + 1 times: Function<Double, Double> boxes the argument and the result, DoubleFunction<Double> the result, DoubleUnaryOperator nothing.
+    */
+        public static double integrate(Function<Double, Double> f, double a, double b, int n) {
+            double h = (b - a) / n;
+            double sum = (f.apply(a) + f.apply(b)) / 2;
+            for (int i = 1; i < n; i++) { sum += f.apply(a + i * h); }
+            return sum * h;
+        }
+        public static double integrate(DoubleFunction<Double> f, double a, double b, int n) {
+            double h = (b - a) / n;
+            double sum = (f.apply(a) + f.apply(b)) / 2;
+            for (int i = 1; i < n; i++) { sum += f.apply(a + i * h); }
+            return sum * h;
+        }
+    // Integrator goes further for DoubleUnaryOperator: Simpson's rule, adaptive subdivision with an error estimate, samples in primitive arrays, parallel sums.
+        public static double integrate(DoubleUnaryOperator f, double a, double b, int n) {
+            return Integrator.trapezoid(f, a, b, n);
+        }
+        public static void testIntegrator() {
+            // Prints: 60.0
+            System.out.println(integrate((double x) -> x + 10, 3, 7, 1_000));
+            // Prints: 1.999998355065663 (exactly 2)
+            System.out.println(integrate((double x) -> Math.sin(x), 0, Math.PI, 1_000));
+            // Prints: 2.0000000000010827
+            System.out.println(Integrator.simpson(Math::sin, 0, Math.PI, 1_000));
+            // Prints: Result[value=2.0000000000010827, error=1.082275010351926E-12, evaluations=1502]
+            System.out.println(Integrator.simpsonWithError(Math::sin, 0, Math.PI, 1_000));
+            // Prints: Result[value=0.6666666666666387, error=3.5809289346105216E-11, evaluations=985] (exactly 2/3), sqrt's infinite slope at 0 concentrating the subdivisions there
+            System.out.println(Integrator.adaptiveSimpson(Math::sqrt, 0, 1, 1e-10));
+            // Prints: 1.772453850905515 (the square root of pi)
+            System.out.println(Integrator.parallelSimpson(x -> Math.exp(-x * x), -10, 10, 10_000_000));
+        }
     }
 
     /**
@@ -99,6 +99,25 @@ public class LambdasIntro {
 	List<Apple> heavyApples2 = filterApples(inventory, (Apple a) -> a.getWeight() > 150);
 	List<Apple> weirdApples = filterApples(inventory, (Apple a) -> a.getWeight() < 80 || Color.RED.equals(a.getColor()));
 
+	// Each call above tests every apple and copies the matches. For large inventories queried often, an AppleInventory indexes the apples by color and weight once; predicates built from its color and weight queries then run as bitmap operations, other lambdas are still tested apple by apple, and the result is a view over the matches rather than a copy:
+	public static List<Apple> filterApples(AppleInventory inventory, Predicate<Apple> p) {
+		return inventory.filter(p);
+	}
+
+	public static void testAppleInventory() {
+		AppleInventory indexed = new AppleInventory(inventory);
+		System.out.println(filterApples(indexed, AppleInventory.color(Color.GREEN).and(AppleInventory.heavierThan(150))));
+		// Prints: [Apple{color=GREEN, weight=155}]
+		// An opaque lambda, tested only on the apples lighter than 130 found by the weight index:
+		System.out.println(filterApples(indexed, AppleInventory.lighterThan(130).and((Apple a) -> a.getColor() == Color.RED)));
+		// Prints: [Apple{color=RED, weight=120}]
+		System.out.println(filterApples(indexed, AppleInventory.lighterThan(80).or(AppleInventory.color(Color.RED))).size());
+		// Prints: 1
+		// The same query, as a plain Predicate, on the list:
+		System.out.println(filterApples(inventory, AppleInventory.lighterThan(80).or(AppleInventory.color(Color.RED))).size());
+		// Prints: 1
+	}
+
 	// But if such a lambda exceeds a few lines in length (so that its behavior isn’t instantly clear), you should instead use a method reference to a method with a descriptive name instead of using an anonymous lambda. Code clarity should be your guide.
 // The above example is based on java.util.function.Predicate. However, one can create her own Predicate class like this:
 	interface ApplePredicate {
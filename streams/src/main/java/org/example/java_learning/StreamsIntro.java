@@ -286,4 +286,22 @@ The streams interface in java.util.stream.Stream.
             });
         }
     }
+
+    public static class MenuIndexing {
+    // Each query above runs its lambdas on every dish, and getCaloricLevel compares the calories again on each call. When the same menu is queried many times, a MenuIndex computes once a bitmap per type, per caloric level and for vegetarian dishes, and sorts the calories; a query is then a few word-wise ANDs, 64 dishes at a time:
+        public static void testMenuIndex() {
+            MenuIndex index = new MenuIndex(Dish.menu);
+            // Vegetarian AND OTHER AND calories < 400, as menu.stream().filter(...).filter(...).filter(...).count():
+            System.out.println(index.query().vegetarian(true).type(Dish.Type.OTHER).caloriesBelow(400).count());
+            // Prints: 2
+            System.out.println(index.query().vegetarian(true).type(Dish.Type.OTHER).caloriesBelow(400).dishes());
+            // Prints: [rice, season fruit]
+            System.out.println(index.query().caloriesBetween(400, 500).dishes());
+            // Prints: [chicken, prawns, salmon]
+            System.out.println(index.query().caloricLevel(CaloricLevel.NORMAL, CaloricLevel.FAT).topByCalories(2));
+            // Prints: [pork, beef]
+            System.out.println(index.query().type(Dish.Type.FISH).bottomByCalories(1));
+            // Prints: [prawns]
+        }
+    }
 }
@@ -0,0 +1,73 @@
+package org.example.java_learning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Queries on size apples of random colors and weights from 50 to 249 g:
+//  - scan*: LambdasIntro.filterApples on the list, a lambda tested on every apple, matches copied in an ArrayList.
+//  - indexed*: the same query built from AppleInventory's color and weight queries, planned on its indexes; the result is a view, counted.
+//  - selective: green apples of 100 or 101 g (about 0.5%); broad: green apples over 150 g (about 25%).
+//  - indexedOpaque: apples over 240 g found by the weight index, then tested by an opaque lambda.
+// Scores are microseconds per query.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class AppleInventoryBenchmark {
+
+    @Param({ "1000000", "10000000" })
+    public int size;
+
+    private List<Apple> apples;
+    private AppleInventory inventory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        apples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) { apples.add(new Apple(50 + random.nextInt(200), random.nextBoolean() ? Color.GREEN : Color.RED)); }
+        inventory = new AppleInventory(apples);
+    }
+
+    @Benchmark
+    public List<Apple> scanSelective() {
+        return LambdasIntro.filterApples(apples, (Apple a) -> a.getColor() == Color.GREEN && a.getWeight() >= 100 && a.getWeight() <= 101);
+    }
+
+    @Benchmark
+    public int indexedSelective() {
+        return inventory.filter(AppleInventory.color(Color.GREEN).and(AppleInventory.weightBetween(100, 101))).size();
+    }
+
+    @Benchmark
+    public List<Apple> scanBroad() {
+        return LambdasIntro.filterApples(apples, (Apple a) -> a.getColor() == Color.GREEN && a.getWeight() > 150);
+    }
+
+    @Benchmark
+    public int indexedBroad() {
+        return inventory.filter(AppleInventory.color(Color.GREEN).and(AppleInventory.heavierThan(150))).size();
+    }
+
+    @Benchmark
+    public int indexedOpaque() {
+        return inventory.filter(AppleInventory.heavierThan(240).and((Apple a) -> a.getWeight() % 2 == 0)).size();
+    }
+}
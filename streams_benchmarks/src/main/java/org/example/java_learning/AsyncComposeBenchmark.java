@@ -0,0 +1,108 @@
+package org.example.java_learning;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+
+import org.example.java_learning.JavaConcurrencyEnhancedMain.Fn;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// One f(x) + g(x) composition per operation in each style of AsyncCompose, f and g being Fn.fi and Fn.gi without their loop and printing (x * 2, x + 1) plus work tokens of Blackhole.consumeCPU (0 = pure overhead, 1000 = about a microsecond).
+// Run with -prof gc for the allocations: gc.alloc.rate.norm is in bytes per composition.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class AsyncComposeBenchmark {
+
+    @Param({ "0", "100", "1000" })
+    public int work;
+
+    private ExecutorService executor;
+    private IntUnaryOperator f;
+    private IntUnaryOperator g;
+    private final IntBinaryOperator combine = Integer::sum;
+    private final CallbackResult callbackResult = new CallbackResult();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // As Fn.executorService in JavaConcurrencyEnhancedMain.
+        executor = Executors.newFixedThreadPool(2);
+        int tokens = work;
+        f = x -> {
+            Blackhole.consumeCPU(tokens);
+            return x * 2;
+        };
+        g = x -> {
+            Blackhole.consumeCPU(tokens);
+            return x + 1;
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public int sequential() {
+        return AsyncCompose.sequential(f, g, Fn.TEST_VALUE, combine);
+    }
+
+    @Benchmark
+    public int threads() throws Exception {
+        return AsyncCompose.threads(f, g, Fn.TEST_VALUE, combine);
+    }
+
+    @Benchmark
+    public int futures() throws Exception {
+        return AsyncCompose.futures(f, g, Fn.TEST_VALUE, combine, executor);
+    }
+
+    @Benchmark
+    public int completableFuture() {
+        return AsyncCompose.completableFuture(f, g, Fn.TEST_VALUE, combine, executor).join();
+    }
+
+    @Benchmark
+    public int callbacks() {
+        callbackResult.waiter = Thread.currentThread();
+        callbackResult.done = false;
+        AsyncCompose.callbacks(f, g, Fn.TEST_VALUE, combine, executor, callbackResult);
+        while (!callbackResult.done) { LockSupport.park(this); }
+        return callbackResult.value;
+    }
+
+    // Reused across compositions, so that waiting for the callback allocates nothing.
+    private static class CallbackResult implements IntConsumer {
+        volatile Thread waiter;
+        volatile boolean done;
+        int value;
+
+        @Override
+        public void accept(int result) {
+            value = result;
+            done = true;
+            LockSupport.unpark(waiter);
+        }
+    }
+}
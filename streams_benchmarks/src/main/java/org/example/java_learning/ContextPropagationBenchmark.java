@@ -0,0 +1,109 @@
+package org.example.java_learning;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Handing a request context over to TASKS tasks, each on a virtual thread of its own reading the context once. Scores are per task, the cost of starting a virtual thread included.
+//  - inheritableThreadLocal: every child thread gets a copy of its parent's inheritable thread-locals when it is created.
+//  - requestContextExecutor: RequestContext bound once, each task re-binding the captured context on a thread not inheriting thread-locals.
+//  - requestContextScope: RequestContext bound once, subtasks forked by a StructuredTaskScope inheriting the binding as is.
+//  - noContext: the same tasks without any context, the baseline.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms4G", "-Xmx4G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class ContextPropagationBenchmark {
+
+    private static final int TASKS = 1_000_000;
+    private static final InheritableThreadLocal<RequestContext> INHERITABLE = new InheritableThreadLocal<>();
+    private static final RequestContext CONTEXT = new RequestContext("request-1", "alice");
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public long noContext() throws InterruptedException {
+        LongAdder read = new LongAdder();
+        runAll(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().inheritInheritableThreadLocals(false).factory()),
+            () -> read.add(CONTEXT.requestId().length()));
+        return read.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public long inheritableThreadLocal() throws InterruptedException {
+        LongAdder read = new LongAdder();
+        INHERITABLE.set(CONTEXT);
+        try {
+            runAll(Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory()),
+                () -> read.add(INHERITABLE.get().requestId().length()));
+        } finally {
+            INHERITABLE.remove();
+        }
+        return read.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public long requestContextExecutor() throws Exception {
+        LongAdder read = new LongAdder();
+        ExecutorService threads = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().inheritInheritableThreadLocals(false).factory());
+        CONTEXT.call(() -> {
+            Executor executor = RequestContext.propagating(threads);
+            runAll(threads, executor, () -> read.add(RequestContext.current().requestId().length()));
+            return null;
+        });
+        return read.sum();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public long requestContextScope() throws Exception {
+        LongAdder read = new LongAdder();
+        CONTEXT.call(() -> {
+            try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+                for (int i = 0; i < TASKS; i++) {
+                    scope.fork(() -> {
+                        read.add(RequestContext.current().requestId().length());
+                        return null;
+                    });
+                }
+                scope.join().throwIfFailed();
+            }
+            return null;
+        });
+        return read.sum();
+    }
+
+    private static void runAll(ExecutorService threads, Runnable task) throws InterruptedException {
+        runAll(threads, threads, task);
+    }
+
+    private static void runAll(ExecutorService threads, Executor executor, Runnable task) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(() -> {
+                task.run();
+                done.countDown();
+            });
+        }
+        done.await();
+        threads.close();
+    }
+}
@@ -0,0 +1,67 @@
+package org.example.java_learning;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// EmployeeRegistry.totals against single raises (raiseSalary of a random id) on a registry of size employees:
+//  - quiet: one thread calling totals, nothing written, every optimistic read validates.
+//  - writers: three threads raising salaries, no reader.
+//  - contended: both at once. Compared with quiet and writers, it shows what the writers cost totals (failed validations, then the locking fallback) and what totals costs the writers (the fallback read-locks all the stripes for the time of one sum).
+// Scores are operations per second, per method in the groups.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class EmployeeRegistryBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int size;
+
+    private EmployeeRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = new EmployeeRegistry(size);
+        for (int i = 0; i < size; i++) { registry.register(new Employee("Employee " + i, 40_000 + i % 1_000, 2000, 1, 1)); }
+    }
+
+    @Benchmark
+    @Group("quiet")
+    @GroupThreads(1)
+    public EmployeeRegistry.Totals quietTotals() { return registry.totals(); }
+
+    @Benchmark
+    @Group("writers")
+    @GroupThreads(3)
+    public void writersRaise() { raise(); }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public EmployeeRegistry.Totals contendedTotals() { return registry.totals(); }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public void contendedRaise() { raise(); }
+
+    // A tiny raise, so that salaries stay finite whatever the number of calls.
+    private void raise() { registry.raiseSalary(ThreadLocalRandom.current().nextInt(size), 1e-9); }
+}
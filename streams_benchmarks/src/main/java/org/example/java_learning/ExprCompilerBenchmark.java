@@ -0,0 +1,95 @@
+package org.example.java_learning;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntUnaryOperator;
+
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.BinOp;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.Expr;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.Number;
+import org.example.java_learning.FunctionalProgrammingMain.PatternMatching.Var;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// A random balanced formula of size nodes (+, - and * of x and digits) evaluated for INPUTS values of x:
+//  - interpret: PatternMatching.evaluate(expr, x), walking the tree and comparing the operator Strings every time.
+//  - closureTree: the simplified formula compiled to a tree of lambdas, as compileInt does up to ExprCompiler.CLOSURE_TREE_MAX_NODES nodes.
+//  - program: the simplified formula compiled to an ExprCompiler.Program, as compileInt does above.
+// compile measures what compileInt costs, done once per formula. Scores are nanoseconds per evaluation (per compilation for compile).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class ExprCompilerBenchmark {
+
+    private static final int INPUTS = 64;
+    private static final String[] OPERATORS = { "+", "-", "*" };
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int size;
+
+    private Expr expr;
+    private IntUnaryOperator closureTree;
+    private IntUnaryOperator program;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        expr = formula(size, new Random(42));
+        ExprCompiler.Node simplified = ExprCompiler.simplify(ExprCompiler.lower(expr), true);
+        closureTree = ExprCompiler.compileInt(simplified);
+        program = new ExprCompiler.Program(simplified);
+        for (int x = 0; x < INPUTS; x++) {
+            int expected = PatternMatching.evaluate(expr, x);
+            if (closureTree.applyAsInt(x) != expected || program.applyAsInt(x) != expected) { throw new IllegalStateException("Compiled formula differs for " + x); }
+        }
+    }
+
+    private static Expr formula(int nodes, Random random) {
+        if (nodes <= 2) { return random.nextBoolean() ? new Var("x") : new Number(random.nextInt(10)); }
+        int left = (nodes - 1) / 2;
+        return new BinOp(OPERATORS[random.nextInt(OPERATORS.length)], formula(left, random), formula(nodes - 1 - left, random));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public int interpret() {
+        int sum = 0;
+        for (int x = 0; x < INPUTS; x++) { sum += PatternMatching.evaluate(expr, x); }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public int closureTree() {
+        int sum = 0;
+        for (int x = 0; x < INPUTS; x++) { sum += closureTree.applyAsInt(x); }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public int program() {
+        int sum = 0;
+        for (int x = 0; x < INPUTS; x++) { sum += program.applyAsInt(x); }
+        return sum;
+    }
+
+    @Benchmark
+    public IntUnaryOperator compile() {
+        return ExprCompiler.compileInt(expr);
+    }
+}
@@ -0,0 +1,89 @@
+package org.example.java_learning;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Sorting size apples of random weights (50 to 249 g) by weight:
+//  - comparing: a copy of a List<Apple> sorted with comparing(Apple::getWeight), as in LambdasInDetails.
+//  - comparingInt: the same with Comparator.comparingInt, no boxing.
+//  - sortedIndex: FruitStore.sortedIndex(WEIGHT), the permutation of the positions, radix sorted (parallel sort from FruitStore.PARALLEL_THRESHOLD with several cores).
+//  - sort: FruitStore.sort(WEIGHT), the columns reordered by that permutation.
+// 10^8 Apple objects don't fit the heap, so the lists stop at 10^7 while the store goes to 10^8 (with 4 GB of heap for its int[] columns and buffers).
+// Scores are milliseconds per sort.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms4G", "-Xmx4G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class FruitStoreBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Objects {
+        @Param({ "1000000", "10000000" })
+        public int size;
+
+        List<Apple> apples;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            apples = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) { apples.add(new Apple(50 + random.nextInt(200), random.nextBoolean() ? Color.GREEN : Color.RED)); }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Columns {
+        @Param({ "1000000", "10000000", "100000000" })
+        public int size;
+
+        FruitStore store;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            // Unsorted again before each sort.
+            Random random = new Random(42);
+            store = new FruitStore(size);
+            for (int i = 0; i < size; i++) { store.add(FruitStore.Kind.APPLE, 50 + random.nextInt(200), random.nextBoolean() ? Color.GREEN : Color.RED); }
+        }
+    }
+
+    @Benchmark
+    public List<Apple> comparing(Objects objects) {
+        List<Apple> copy = new ArrayList<>(objects.apples);
+        copy.sort(Comparator.comparing(Apple::getWeight));
+        return copy;
+    }
+
+    @Benchmark
+    public List<Apple> comparingInt(Objects objects) {
+        List<Apple> copy = new ArrayList<>(objects.apples);
+        copy.sort(Comparator.comparingInt(Apple::getWeight));
+        return copy;
+    }
+
+    @Benchmark
+    public int[] sortedIndex(Columns columns) { return columns.store.sortedIndex(FruitStore.IntKey.WEIGHT); }
+
+    @Benchmark
+    public FruitStore sort(Columns columns) {
+        columns.store.sort(FruitStore.IntKey.WEIGHT);
+        return columns.store;
+    }
+}
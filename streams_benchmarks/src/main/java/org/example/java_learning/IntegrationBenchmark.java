@@ -0,0 +1,52 @@
+package org.example.java_learning;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleFunction;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Function;
+
+import org.example.java_learning.LambdasInDetails.LambdasAndMathematics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The integral of x * x + 10 over [3, 7] with the composite trapezium rule on samples points, f being cheap so that what is measured is the way samples are taken:
+//  - boxedFunction: LambdasAndMathematics.integrate(Function<Double, Double>, ...), boxing argument and result of each sample.
+//  - boxedResult: integrate(DoubleFunction<Double>, ...), boxing the result.
+//  - primitive: integrate(DoubleUnaryOperator, ...), i.e. Integrator.trapezoid, samples in a double[] chunk then summed with four accumulators.
+//  - parallel: Integrator.parallelTrapezoid, the chunks shared by the common ForkJoinPool.
+// Escape analysis removes some boxes once f is inlined, so the gap depends on the JIT as much as on the interface. Scores are milliseconds per integral.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class IntegrationBenchmark {
+
+    @Param({ "1000000", "100000000" })
+    public int samples;
+
+    private final Function<Double, Double> boxedFunction = x -> x * x + 10;
+    private final DoubleFunction<Double> boxedResult = x -> x * x + 10;
+    private final DoubleUnaryOperator primitive = x -> x * x + 10;
+
+    @Benchmark
+    public double boxedFunction() { return LambdasAndMathematics.integrate(boxedFunction, 3, 7, samples); }
+
+    @Benchmark
+    public double boxedResult() { return LambdasAndMathematics.integrate(boxedResult, 3, 7, samples); }
+
+    @Benchmark
+    public double primitive() { return LambdasAndMathematics.integrate(primitive, 3, 7, samples); }
+
+    @Benchmark
+    public double parallel() { return Integrator.parallelTrapezoid(primitive, 3, 7, samples); }
+}
@@ -0,0 +1,79 @@
+package org.example.java_learning;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Queries on size random dishes (names taken from Dish.menu, calories from 0 to 999):
+//  - *Count: how many dishes are vegetarian AND OTHER AND under 400 calories, with a stream of filters (sequential and parallel) or a MenuIndex query.
+//  - *Range: the dishes from 400 to 500 calories, collected by a stream or a MenuIndex view.
+//  - *Top: the 10 most caloric vegetarian dishes, sorted by a stream or walked down the sorted calories column of the index.
+// Scores are milliseconds per query.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class MenuIndexBenchmark {
+
+    @Param({ "1000000", "10000000" })
+    public int size;
+
+    private List<Dish> menu;
+    private MenuIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        Dish.Type[] types = Dish.Type.values();
+        menu = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String name = Dish.menu.get(i % Dish.menu.size()).getName();
+            menu.add(new Dish(name, random.nextBoolean(), random.nextInt(1000), types[random.nextInt(types.length)]));
+        }
+        index = new MenuIndex(menu);
+    }
+
+    @Benchmark
+    public long streamCount() {
+        return menu.stream().filter(Dish::isVegetarian).filter(d -> d.getType() == Dish.Type.OTHER).filter(d -> d.getCalories() < 400).count();
+    }
+
+    @Benchmark
+    public long parallelStreamCount() {
+        return menu.parallelStream().filter(Dish::isVegetarian).filter(d -> d.getType() == Dish.Type.OTHER).filter(d -> d.getCalories() < 400).count();
+    }
+
+    @Benchmark
+    public int indexCount() { return index.query().vegetarian(true).type(Dish.Type.OTHER).caloriesBelow(400).count(); }
+
+    @Benchmark
+    public List<Dish> streamRange() { return menu.stream().filter(d -> d.getCalories() >= 400 && d.getCalories() <= 500).toList(); }
+
+    @Benchmark
+    public List<Dish> indexRange() { return index.query().caloriesBetween(400, 500).dishes(); }
+
+    @Benchmark
+    public List<Dish> streamTop() {
+        return menu.stream().filter(Dish::isVegetarian).sorted(Comparator.comparingInt(Dish::getCalories).reversed()).limit(10).toList();
+    }
+
+    @Benchmark
+    public List<Dish> indexTop() { return index.query().vegetarian(true).topByCalories(10); }
+}
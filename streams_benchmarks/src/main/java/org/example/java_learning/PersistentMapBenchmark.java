@@ -0,0 +1,115 @@
+package org.example.java_learning;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.example.java_learning.FunctionalProgrammingMain.PersistentDataStructures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Versions of a map of 10^6 String keys (random, so that Tree stays roughly balanced: in sorted order functionalUpdate overflows the stack) with the three ways to keep the previous version intact:
+//  - Tree with PersistentDataStructures.functionalUpdate, copying the path to the key.
+//  - PersistentTreeMap, copying the path to the key in a balanced tree.
+//  - copy-on-write HashMap, copying the whole map on every update.
+// update* make one new version of the map (ns per update), lookup* read one key, load* build the map from scratch (ms per load).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class PersistentMapBenchmark {
+
+    @Param({ "1000000" })
+    public int size;
+
+    private String[] keys;
+    private Tree tree;
+    private PersistentTreeMap<String, Integer> map;
+    private HashMap<String, Integer> hashMap;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        keys = new String[size];
+        for (int i = 0; i < size; i++) { keys[i] = Long.toString(random.nextLong() & Long.MAX_VALUE, 36); }
+        tree = loadTree();
+        map = loadPersistentTreeMap();
+        hashMap = new HashMap<>(map.size() * 2);
+        map.forEach(hashMap::put);
+    }
+
+    private String nextKey() {
+        String key = keys[next];
+        next = next + 1 == keys.length ? 0 : next + 1;
+        return key;
+    }
+
+    @Benchmark
+    public Tree updateFunctionalUpdate() {
+        return PersistentDataStructures.functionalUpdate(nextKey(), next, tree);
+    }
+
+    @Benchmark
+    public PersistentTreeMap<String, Integer> updatePersistentTreeMap() {
+        return map.put(nextKey(), next);
+    }
+
+    @Benchmark
+    public HashMap<String, Integer> updateCopyOnWriteHashMap() {
+        HashMap<String, Integer> copy = new HashMap<>(hashMap);
+        copy.put(nextKey(), next);
+        return copy;
+    }
+
+    @Benchmark
+    public int lookupTree() {
+        return Tree.lookup(nextKey(), -1, tree);
+    }
+
+    @Benchmark
+    public Integer lookupPersistentTreeMap() {
+        return map.get(nextKey());
+    }
+
+    @Benchmark
+    public Integer lookupHashMap() {
+        return hashMap.get(nextKey());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Tree loadTree() {
+        Tree t = null;
+        for (int i = 0; i < keys.length; i++) { t = PersistentDataStructures.functionalUpdate(keys[i], i, t); }
+        return t;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PersistentTreeMap<String, Integer> loadPersistentTreeMap() {
+        PersistentTreeMap<String, Integer> m = PersistentTreeMap.empty();
+        for (int i = 0; i < keys.length; i++) { m = m.put(keys[i], i); }
+        return m;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PersistentTreeMap<String, Integer> loadPersistentTreeMapBuilder() {
+        PersistentTreeMap.Builder<String, Integer> builder = PersistentTreeMap.builder();
+        for (int i = 0; i < keys.length; i++) { builder.put(keys[i], i); }
+        return builder.build();
+    }
+}
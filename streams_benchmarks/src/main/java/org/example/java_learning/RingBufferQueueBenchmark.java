@@ -0,0 +1,174 @@
+package org.example.java_learning;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// threads producers hand ELEMENTS elements over to threads consumers through each queue, bounded ones holding CAPACITY elements.
+// ringBatch moves batches of up to BATCH elements with offerAll/drainTo. waitingQueue is the WaitingQueue of JavaConcurrencyAndMemoryMain.
+// Scores are elements per second.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class RingBufferQueueBenchmark {
+
+    private static final int ELEMENTS = 1 << 20;
+    private static final int CAPACITY = 1024;
+    private static final int BATCH = 64;
+
+    @Param({ "1", "2", "4", "8", "16", "32" })
+    public int threads;
+
+    @Param({ "ringSpin", "ringYield", "ringPark", "ringBlock", "ringBatch", "waitingQueue", "arrayBlockingQueue", "linkedTransferQueue" })
+    public String queue;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2 * threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ELEMENTS)
+    public long handOver() throws Exception {
+        Channel channel = switch (queue) {
+            case "ringSpin" -> new RingChannel(new RingBufferQueue<>(CAPACITY, WaitStrategy::spinning));
+            case "ringYield" -> new RingChannel(new RingBufferQueue<>(CAPACITY, WaitStrategy::yielding));
+            case "ringPark" -> new RingChannel(new RingBufferQueue<>(CAPACITY, WaitStrategy::parking));
+            case "ringBlock" -> new RingChannel(new RingBufferQueue<>(CAPACITY, WaitStrategy::blocking));
+            case "ringBatch" -> new RingBatchChannel(new RingBufferQueue<>(CAPACITY, WaitStrategy::blocking));
+            case "waitingQueue" -> new WaitingQueueChannel(new WaitingQueue<>());
+            case "arrayBlockingQueue" -> new BlockingQueueChannel(new ArrayBlockingQueue<>(CAPACITY));
+            case "linkedTransferQueue" -> new BlockingQueueChannel(new LinkedTransferQueue<>());
+            default -> throw new IllegalArgumentException(queue);
+        };
+        int perThread = ELEMENTS / threads;
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            tasks.add(() -> { channel.produce(perThread); return 0L; });
+            tasks.add(() -> channel.consume(perThread));
+        }
+        long sum = 0;
+        for (Future<Long> future : executor.invokeAll(tasks)) { sum += future.get(); }
+        return sum;
+    }
+
+    private interface Channel {
+        void produce(int count) throws InterruptedException;
+        // Returns the sum of the consumed elements.
+        long consume(int count) throws InterruptedException;
+    }
+
+    private record RingChannel(RingBufferQueue<Integer> queue) implements Channel {
+        @Override
+        public void produce(int count) throws InterruptedException {
+            for (int i = 0; i < count; i++) { queue.put(i); }
+        }
+        @Override
+        public long consume(int count) throws InterruptedException {
+            long sum = 0;
+            for (int i = 0; i < count; i++) { sum += queue.take(); }
+            return sum;
+        }
+    }
+
+    private record RingBatchChannel(RingBufferQueue<Integer> queue) implements Channel {
+        @Override
+        public void produce(int count) throws InterruptedException {
+            List<Integer> batch = new ArrayList<>(BATCH);
+            for (int produced = 0; produced < count; ) {
+                batch.clear();
+                for (int i = produced; i < Math.min(count, produced + BATCH); i++) { batch.add(i); }
+                int added = queue.offerAll(batch);
+                if (added == 0) { queue.put(batch.get(0)); added = 1; }
+                produced += added;
+            }
+        }
+        @Override
+        public long consume(int count) throws InterruptedException {
+            List<Integer> batch = new ArrayList<>(BATCH);
+            long sum = 0;
+            for (int consumed = 0; consumed < count; ) {
+                batch.clear();
+                if (queue.drainTo(batch, Math.min(BATCH, count - consumed)) == 0) { batch.add(queue.take()); }
+                for (Integer element : batch) { sum += element; }
+                consumed += batch.size();
+            }
+            return sum;
+        }
+    }
+
+    private record BlockingQueueChannel(BlockingQueue<Integer> queue) implements Channel {
+        @Override
+        public void produce(int count) throws InterruptedException {
+            for (int i = 0; i < count; i++) { queue.put(i); }
+        }
+        @Override
+        public long consume(int count) throws InterruptedException {
+            long sum = 0;
+            for (int i = 0; i < count; i++) { sum += queue.take(); }
+            return sum;
+        }
+    }
+
+    private record WaitingQueueChannel(WaitingQueue<Integer> queue) implements Channel {
+        @Override
+        public void produce(int count) {
+            for (int i = 0; i < count; i++) { queue.push(i); }
+        }
+        @Override
+        public long consume(int count) {
+            long sum = 0;
+            for (int i = 0; i < count; i++) { sum += queue.pop(); }
+            return sum;
+        }
+    }
+
+    // As in JavaConcurrencyAndMemoryMain.
+    private static class WaitingQueue<E> {
+        LinkedList<E> q = new LinkedList<E>(); // storage
+        public synchronized void push(E o) {
+            q.add(o); // Append the object to the end of the list
+            this.notifyAll(); // Tell waiting threads that data is ready
+        }
+        public synchronized E pop() {
+            while (q.size() == 0) {
+                try { this.wait(); }
+                catch (InterruptedException ignore) {}
+            }
+            return q.remove();
+        }
+    }
+}
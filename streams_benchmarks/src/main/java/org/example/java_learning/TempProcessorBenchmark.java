@@ -0,0 +1,211 @@
+package org.example.java_learning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow.Processor;
+import java.util.concurrent.Flow.Publisher;
+import java.util.concurrent.Flow.Subscriber;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+
+import org.example.java_learning.JavaConcurrencyEnhancedMain.ReactiveProgramming.MutableTempInfo;
+import org.example.java_learning.JavaConcurrencyEnhancedMain.ReactiveProgramming.TempInfo;
+import org.example.java_learning.JavaConcurrencyEnhancedMain.ReactiveProgramming.TempProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// A five-stage pipeline: Fahrenheit to Celsius (map), freezing temperatures dropped (filter), every 2nd kept (sample), windows of 8 (window), then a buffer of 1024 keeping the latest (buffer).
+//  - chainedProcessors: a Processor per synchronous stage, TempProcessor for the conversion, each one a Subscriber hop, then the same buffer.
+//  - fused: the same stages with FlowOps, the four synchronous ones fused in one Subscriber, a new TempInfo per conversion.
+//  - fusedInPlace: pooled MutableTempInfo events converted in place. A window keeps references to its events, which a pooled event can't allow, so this chain clamps the temperatures in place (transform) instead, and copies the events it keeps before the buffer. Without a window, eight times as many events reach the buffer, so its scores don't compare with the other two.
+// Scores are source events per second.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class TempProcessorBenchmark {
+
+    private static final int EVENTS = 1_000_000;
+    private static final int SAMPLE = 2;
+    private static final int WINDOW = 8;
+    private static final int BUFFER = 1024;
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void chainedProcessors(Blackhole bh) {
+        Publisher<List<TempInfo>> chain = subscriber -> {
+            WindowProcessor<TempInfo> window = new WindowProcessor<>(WINDOW);
+            window.subscribe(subscriber);
+            SampleProcessor<TempInfo> sample = new SampleProcessor<>(SAMPLE);
+            sample.subscribe(window);
+            FilterProcessor<TempInfo> filter = new FilterProcessor<>(temp -> temp.getTemp() >= 0);
+            filter.subscribe(sample);
+            TempProcessor toCelsius = new TempProcessor();
+            toCelsius.subscribe(filter);
+            new Source<>(i -> new TempInfo("New York", i & 127)).subscribe(toCelsius);
+        };
+        FlowOps.from(chain).buffer(BUFFER, FlowOps.Overflow.LATEST).subscribe(new Sink<>(bh));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void fused(Blackhole bh) {
+        FlowOps.from(new Source<>(i -> new TempInfo("New York", i & 127)))
+            .map(temp -> new TempInfo(temp.getTown(), (temp.getTemp() - 32) * 5 / 9))
+            .filter(temp -> temp.getTemp() >= 0)
+            .sample(SAMPLE)
+            .window(WINDOW)
+            .buffer(BUFFER, FlowOps.Overflow.LATEST)
+            .subscribe(new Sink<>(bh));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void fusedInPlace(Blackhole bh) {
+        // Every stage before the buffer is done with an event before the source emits the next one, so a single pooled instance is enough.
+        MutableTempInfo pooled = new MutableTempInfo();
+        FlowOps.from(new Source<>(i -> pooled.set("New York", i & 127)))
+            .transform(MutableTempInfo::toCelsius)
+            .filter(temp -> temp.getTemp() >= 0)
+            .sample(SAMPLE)
+            .transform(temp -> temp.set(temp.getTown(), Math.min(temp.getTemp(), 50)))
+            // The buffer keeps references to its elements: copied, as the pooled event is reused for the next one.
+            .map(temp -> new TempInfo(temp.getTown(), temp.getTemp()))
+            .buffer(BUFFER, FlowOps.Overflow.LATEST)
+            .subscribe(new Sink<>(bh));
+    }
+
+    // A synchronous stage as its own Processor, forwarding every signal, as TempProcessor does.
+    private abstract static class StageProcessor<T, R> implements Processor<T, R> {
+        Subscriber<? super R> subscriber;
+        Subscription upstream;
+
+        @Override
+        public void subscribe(Subscriber<? super R> subscriber) { this.subscriber = subscriber; }
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            upstream = subscription;
+            subscriber.onSubscribe(subscription);
+        }
+        @Override
+        public void onError(Throwable throwable) { subscriber.onError(throwable); }
+        @Override
+        public void onComplete() { subscriber.onComplete(); }
+        // The downstream didn't get the element it asked for.
+        void skip() { upstream.request(1); }
+    }
+
+    private static class FilterProcessor<T> extends StageProcessor<T, T> {
+        private final Predicate<? super T> predicate;
+
+        FilterProcessor(Predicate<? super T> predicate) { this.predicate = predicate; }
+
+        @Override
+        public void onNext(T item) {
+            if (predicate.test(item)) { subscriber.onNext(item); } else { skip(); }
+        }
+    }
+
+    private static class SampleProcessor<T> extends StageProcessor<T, T> {
+        private final int n;
+        private int count;
+
+        SampleProcessor(int n) { this.n = n; }
+
+        @Override
+        public void onNext(T item) {
+            if (++count < n) {
+                skip();
+                return;
+            }
+            count = 0;
+            subscriber.onNext(item);
+        }
+    }
+
+    private static class WindowProcessor<T> extends StageProcessor<T, List<T>> {
+        private final int size;
+        private List<T> window;
+
+        WindowProcessor(int size) {
+            this.size = size;
+            window = new ArrayList<>(size);
+        }
+
+        @Override
+        public void onNext(T item) {
+            window.add(item);
+            if (window.size() < size) {
+                skip();
+                return;
+            }
+            List<T> full = window;
+            window = new ArrayList<>(size);
+            subscriber.onNext(full);
+        }
+    }
+
+    // Synchronous source of EVENTS elements honouring the requested demand, emitting in a loop rather than recursively from request().
+    private static class Source<T> implements Publisher<T> {
+        private final IntFunction<T> factory;
+
+        Source(IntFunction<T> factory) { this.factory = factory; }
+
+        @Override
+        public void subscribe(Subscriber<? super T> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private long requested;
+                private int index;
+                private boolean emitting;
+                private boolean cancelled;
+
+                @Override
+                public void request(long n) {
+                    requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                    if (emitting) { return; }
+                    emitting = true;
+                    while (requested > 0 && index < EVENTS && !cancelled) {
+                        requested--;
+                        subscriber.onNext(factory.apply(index++));
+                    }
+                    emitting = false;
+                    if (index == EVENTS && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() { cancelled = true; }
+            });
+        }
+    }
+
+    private static class Sink<T> implements Subscriber<T> {
+        private final Blackhole bh;
+
+        Sink(Blackhole bh) { this.bh = bh; }
+
+        @Override
+        public void onSubscribe(Subscription subscription) { subscription.request(Long.MAX_VALUE); }
+        @Override
+        public void onNext(T item) { bh.consume(item); }
+        @Override
+        public void onError(Throwable t) { throw new IllegalStateException(t); }
+        @Override
+        public void onComplete() {}
+    }
+}
@@ -0,0 +1,49 @@
+package org.example.java_learning;
+
+import java.util.concurrent.TimeUnit;
+
+import org.example.java_learning.FunctionalProgrammingMain.Recursion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// factorialHelper(1, depth) of Recursion run three ways, factorialTailRecursive itself overflowing the stack at this depth:
+//  - loop: the loop the JIT would make of the tail call, written by hand.
+//  - tailRecursive: Trampoline.tailRecursive, arguments passed through one reused frame.
+//  - trampoline: a Trampoline.more step per call, so a Supplier, a More and a boxed Long per call.
+// Scores are milliseconds per factorial; run with -prof gc to see tailRecursive allocate a single frame.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class TrampolineBenchmark {
+
+    @Param({ "10000000" })
+    public long depth;
+
+    @Benchmark
+    public long loop() {
+        long acc = 1;
+        for (long n = depth; n != 1; n--) { acc *= n; }
+        return acc;
+    }
+
+    @Benchmark
+    public long tailRecursive() {
+        return Recursion.factorialTrampolined(depth);
+    }
+
+    @Benchmark
+    public long trampoline() {
+        return Recursion.factorialHelperTrampolined(1, depth).run();
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.java_learning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// writers threads commit COMMITS puts of random keys, in all, to a VersionedStore of KEYS keys retaining the last 16 versions.
+// With analytics = true a reader meanwhile sums every value of the latest snapshot, again and again: it must not slow the writers down beyond taking a core.
+// Scores are commits per second; the retries per commit are printed after each iteration (CAS failures, each one applying the update once more).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 2, jvmArgs = { "-Xms2G", "-Xmx2G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class VersionedStoreBenchmark {
+
+    private static final int KEYS = 100_000;
+    private static final int COMMITS = 1 << 16;
+
+    @Param({ "1", "2", "4", "8", "16", "32", "64" })
+    public int writers;
+
+    @Param({ "false", "true" })
+    public boolean analytics;
+
+    private ExecutorService executor;
+    private VersionedStore<Integer, Integer> store;
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private Future<Long> reader;
+    private long commitsBefore;
+    private long retriesBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(writers + 1);
+        PersistentTreeMap.Builder<Integer, Integer> builder = PersistentTreeMap.builder();
+        for (int key = 0; key < KEYS; key++) { builder.put(key, key); }
+        store = new VersionedStore<>(builder.build(), 16);
+    }
+
+    @Setup(Level.Iteration)
+    public void startReader() {
+        commitsBefore = store.commits();
+        retriesBefore = store.retries();
+        if (!analytics) { return; }
+        stop.set(false);
+        reader = executor.submit(() -> {
+            long sum = 0;
+            while (!stop.get()) {
+                for (var entry : store.map()) { sum += entry.getValue(); }
+            }
+            return sum;
+        });
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopReader() throws Exception {
+        if (analytics) {
+            stop.set(true);
+            reader.get();
+        }
+        long commits = store.commits() - commitsBefore;
+        System.out.printf("%n%.3f retries per commit%n", (double) (store.retries() - retriesBefore) / commits);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COMMITS)
+    public long commit() throws Exception {
+        int perWriter = COMMITS / writers;
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            tasks.add(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long last = 0;
+                for (int j = 0; j < perWriter; j++) {
+                    int key = random.nextInt(KEYS);
+                    int value = random.nextInt();
+                    last = store.put(key, value).number();
+                }
+                return last;
+            });
+        }
+        long last = 0;
+        for (Future<Long> result : executor.invokeAll(tasks)) { last = Math.max(last, result.get()); }
+        return last;
+    }
+}
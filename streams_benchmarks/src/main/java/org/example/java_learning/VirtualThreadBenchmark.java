@@ -0,0 +1,97 @@
+package org.example.java_learning;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// The scenarios of LoomScalability, each result (with latency percentiles and carrier utilization) printed to the benchmark's output, and ThreadLocal against ScopedValue.
+// Thread-per-task and pinning runs take milliseconds to seconds, so they are single shots; tasks block for 1 ms.
+@State(Scope.Thread)
+@Fork(value = 2, jvmArgs = { "-Xms4G", "-Xmx4G", "--enable-preview" })
+@Measurement(iterations = 5)
+@Warmup(iterations = 3)
+public class VirtualThreadBenchmark {
+
+    private static final Duration BLOCKING = Duration.ofMillis(1);
+    private static final int PINNING_TASKS = 10_000;
+    private static final int READS = 16;
+
+    private static final ThreadLocal<String> THREAD_LOCAL = new ThreadLocal<>();
+    private static final ScopedValue<String> SCOPED_VALUE = ScopedValue.newInstance();
+
+    @State(Scope.Benchmark)
+    public static class ThreadPerTask {
+        @Param({ "1000", "10000", "100000", "1000000" })
+        public int tasks;
+
+        @Param({ "virtual", "platformPool" })
+        public String executor;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LoomScalability.Result threadPerTask(ThreadPerTask state) {
+        LoomScalability.Result result = switch (state.executor) {
+            case "virtual" -> LoomScalability.virtualThreadPerTask(state.tasks, BLOCKING);
+            case "platformPool" -> LoomScalability.platformPool(200, state.tasks, BLOCKING);
+            default -> throw new IllegalArgumentException(state.executor);
+        };
+        System.out.println(result);
+        return result;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LoomScalability.Result pinnedBySynchronized() {
+        LoomScalability.Result result = LoomScalability.pinnedBySynchronized(PINNING_TASKS, BLOCKING);
+        System.out.println(result);
+        return result;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public LoomScalability.Result unpinnedByLock() {
+        LoomScalability.Result result = LoomScalability.unpinnedByLock(PINNING_TASKS, BLOCKING);
+        System.out.println(result);
+        return result;
+    }
+
+    // A request context set once and read READS times further down the call chain, scores are per read.
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(READS)
+    public void threadLocal(Blackhole bh) {
+        THREAD_LOCAL.set("principal");
+        try {
+            for (int i = 0; i < READS; i++) { bh.consume(THREAD_LOCAL.get()); }
+        } finally {
+            THREAD_LOCAL.remove();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(READS)
+    public void scopedValue(Blackhole bh) {
+        ScopedValue.where(SCOPED_VALUE, "principal").run(() -> {
+            for (int i = 0; i < READS; i++) { bh.consume(SCOPED_VALUE.get()); }
+        });
+    }
+}